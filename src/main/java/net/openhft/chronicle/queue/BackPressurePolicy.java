@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What an appender does when the slowest named tailer, see {@link ChronicleQueue#createTailer(String)},
+ * has more than {@link #maxLag()} excerpts still to read. The lag is worked out every {@link
+ * #checkEvery()} excerpts written, or sooner if the excerpts written since could have taken it past
+ * the limit.
+ */
+public final class BackPressurePolicy {
+    public static final BackPressurePolicy NONE = new BackPressurePolicy(Action.NONE, Long.MAX_VALUE, 0, null, 64);
+
+    @NotNull
+    private final Action action;
+    private final long maxLag;
+    private final long timeoutMS;
+    @Nullable
+    private final Listener listener;
+    private final int checkEvery;
+
+    private BackPressurePolicy(@NotNull Action action, long maxLag, long timeoutMS, @Nullable Listener listener, int checkEvery) {
+        this.action = action;
+        this.maxLag = maxLag;
+        this.timeoutMS = timeoutMS;
+        this.listener = listener;
+        this.checkEvery = checkEvery;
+    }
+
+    /**
+     * Parks the appending thread until the lag is below maxLag, or throws an
+     * IllegalStateException after timeout.
+     */
+    @NotNull
+    public static BackPressurePolicy block(long maxLag, long timeout, @NotNull TimeUnit unit) {
+        return new BackPressurePolicy(Action.BLOCK, checkLag(maxLag), unit.toMillis(timeout), null, NONE.checkEvery);
+    }
+
+    /**
+     * Busy waits until the lag is below maxLag, or throws an IllegalStateException after timeout.
+     */
+    @NotNull
+    public static BackPressurePolicy spin(long maxLag, long timeout, @NotNull TimeUnit unit) {
+        return new BackPressurePolicy(Action.SPIN, checkLag(maxLag), unit.toMillis(timeout), null, NONE.checkEvery);
+    }
+
+    /**
+     * Discards the excerpts written while the lag is maxLag or more.
+     */
+    @NotNull
+    public static BackPressurePolicy drop(long maxLag) {
+        return new BackPressurePolicy(Action.DROP, checkLag(maxLag), 0, null, NONE.checkEvery);
+    }
+
+    /**
+     * Tells the listener each time the lag is found to be maxLag or more, and writes anyway.
+     */
+    @NotNull
+    public static BackPressurePolicy callback(long maxLag, @NotNull Listener listener) {
+        return new BackPressurePolicy(Action.CALLBACK, checkLag(maxLag), 0, listener, NONE.checkEvery);
+    }
+
+    private static long checkLag(long maxLag) {
+        if (maxLag < 1)
+            throw new IllegalArgumentException("maxLag=" + maxLag);
+        return maxLag;
+    }
+
+    /**
+     * @param checkEvery the most excerpts to write between working out the lag.
+     */
+    @NotNull
+    public BackPressurePolicy andCheckEvery(int checkEvery) {
+        if (checkEvery < 1)
+            throw new IllegalArgumentException("checkEvery=" + checkEvery);
+        return new BackPressurePolicy(action, maxLag, timeoutMS, listener, checkEvery);
+    }
+
+    @NotNull
+    public Action action() {
+        return action;
+    }
+
+    public long maxLag() {
+        return maxLag;
+    }
+
+    public long timeoutMS() {
+        return timeoutMS;
+    }
+
+    @Nullable
+    public Listener listener() {
+        return listener;
+    }
+
+    public int checkEvery() {
+        return checkEvery;
+    }
+
+    public boolean isNone() {
+        return action == Action.NONE;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "BackPressurePolicy{" +
+                "action=" + action +
+                ", maxLag=" + maxLag +
+                ", timeoutMS=" + timeoutMS +
+                ", checkEvery=" + checkEvery +
+                '}';
+    }
+
+    public enum Action {
+        NONE, BLOCK, SPIN, DROP, CALLBACK
+    }
+
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called on the appending thread.
+         *
+         * @param lag the excerpts the slowest named tailer has still to read
+         */
+        void onBackPressure(long lag);
+    }
+}
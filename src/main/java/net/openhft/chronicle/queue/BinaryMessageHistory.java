@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.wire.MessageHistory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A message history stored as a fixed layout binary record at the start of each excerpt of a queue
+ * built with {@code binaryHistory(true)}, rather than as a {@code history} field written by a method
+ * writer.
+ * <p>
+ * The record is {@code [magic: 2 bytes][sources: 1 byte][timings: 1 byte]} followed by {@code
+ * [sourceId: 4 bytes][sourceIndex: 8 bytes]} per source and {@code [timing: 8 bytes]} per timing,
+ * so it is written and read without allocating or comparing field names. The appender writes the
+ * history of its thread with the time of writing added, and the tailer reads it back into the
+ * history of its thread, adding its queue's source id, the index read and the time of reading.
+ * <p>
+ * Every data excerpt of such a queue starts with a record, however it was appended, so a record is
+ * only looked for where there has to be one. The magic is a check that it is, not a way of telling
+ * a record from the start of a message.
+ */
+public class BinaryMessageHistory implements MessageHistory {
+    public static final int MAX_SOURCES = 32;
+    public static final int MAX_TIMINGS = 64;
+    static final short MAGIC = 0x4D48; // "HM"
+    static final int HEADER_LENGTH = 4;
+    public static final int MAX_LENGTH = HEADER_LENGTH + MAX_SOURCES * (4 + 8) + MAX_TIMINGS * 8;
+    private static final ThreadLocal<BinaryMessageHistory> THREAD_LOCAL =
+            ThreadLocal.withInitial(BinaryMessageHistory::new);
+
+    private final int[] sourceIds = new int[MAX_SOURCES];
+    private final long[] sourceIndices = new long[MAX_SOURCES];
+    private final long[] timings = new long[MAX_TIMINGS];
+    private int sources, timingCount;
+    // the length of the record last read, or 0 if there wasn't one.
+    private int readLength;
+
+    /**
+     * @return the history of the excerpt last read, or to be written, by this thread.
+     */
+    @NotNull
+    public static BinaryMessageHistory get() {
+        return THREAD_LOCAL.get();
+    }
+
+    @Override
+    public int timings() {
+        return timingCount;
+    }
+
+    @Override
+    public long timing(int n) {
+        return timings[n];
+    }
+
+    @Override
+    public int sources() {
+        return sources;
+    }
+
+    @Override
+    public int sourceId(int n) {
+        return sourceIds[n];
+    }
+
+    @Override
+    public long sourceIndex(int n) {
+        return sourceIndices[n];
+    }
+
+    @Override
+    public void reset() {
+        sources = timingCount = readLength = 0;
+    }
+
+    /**
+     * Adds a source, ignored once there are {@link #MAX_SOURCES}.
+     */
+    public void addSource(int sourceId, long sourceIndex) {
+        if (sources >= MAX_SOURCES)
+            return;
+        sourceIds[sources] = sourceId;
+        sourceIndices[sources++] = sourceIndex;
+    }
+
+    /**
+     * Adds a timing, ignored once there are {@link #MAX_TIMINGS}.
+     */
+    public void addTiming(long nanoTime) {
+        if (timingCount < MAX_TIMINGS)
+            timings[timingCount++] = nanoTime;
+    }
+
+    /**
+     * @return the length of the record {@link #writeTo(Bytes, long)} writes.
+     */
+    public int writeLength() {
+        return HEADER_LENGTH + sources * (4 + 8) + (Math.min(timingCount + 1, MAX_TIMINGS)) * 8;
+    }
+
+    /**
+     * @return the length of the record {@link #readFrom(Bytes)} last skipped, or 0 if there wasn't
+     * one.
+     */
+    public int readLength() {
+        return readLength;
+    }
+
+    /**
+     * Writes this history with {@code nanoTime} as its last timing, without adding it to this
+     * history, so an excerpt read once can be written many times.
+     */
+    public void writeTo(@NotNull Bytes<?> bytes, long nanoTime) {
+        int timingsWritten = Math.min(timingCount + 1, MAX_TIMINGS);
+        bytes.writeShort(MAGIC);
+        bytes.writeUnsignedByte(sources);
+        bytes.writeUnsignedByte(timingsWritten);
+        for (int i = 0; i < sources; i++) {
+            bytes.writeInt(sourceIds[i]);
+            bytes.writeLong(sourceIndices[i]);
+        }
+        for (int i = 0; i < timingsWritten - 1; i++)
+            bytes.writeLong(timings[i]);
+        bytes.writeLong(nanoTime);
+    }
+
+    /**
+     * Reads the record at the read position, the start of an excerpt of a queue with {@code
+     * binaryHistory}, into this history, skipping past it.
+     *
+     * @return false, leaving this history empty and the read position as it was, if there is no
+     * valid record at the read position, e.g. the excerpt was written without {@code
+     * binaryHistory}.
+     */
+    public boolean readFrom(@NotNull Bytes<?> bytes) {
+        reset();
+        long start = bytes.readPosition();
+        if (bytes.readRemaining() < HEADER_LENGTH || bytes.readShort(start) != MAGIC)
+            return false;
+        int sources = bytes.readUnsignedByte(start + 2);
+        int timings = bytes.readUnsignedByte(start + 3);
+        long length = HEADER_LENGTH + sources * (4 + 8) + timings * 8L;
+        if (sources > MAX_SOURCES || timings > MAX_TIMINGS || bytes.readRemaining() < length)
+            return false;
+
+        long pos = start + HEADER_LENGTH;
+        for (int i = 0; i < sources; i++, pos += 4 + 8) {
+            sourceIds[i] = bytes.readInt(pos);
+            sourceIndices[i] = bytes.readLong(pos + 4);
+        }
+        for (int i = 0; i < timings; i++, pos += 8)
+            this.timings[i] = bytes.readLong(pos);
+        this.sources = sources;
+        this.timingCount = timings;
+        this.readLength = (int) length;
+        bytes.readSkip(length);
+        return true;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("BinaryMessageHistory{sources=[");
+        for (int i = 0; i < sources; i++)
+            sb.append(i == 0 ? "" : ", ").append(sourceIds[i]).append('=').append(Long.toHexString(sourceIndices[i]));
+        sb.append("], timings=[");
+        for (int i = 0; i < timingCount; i++)
+            sb.append(i == 0 ? "" : ", ").append(timings[i]);
+        return sb.append("]}").toString();
+    }
+}
@@ -67,6 +67,16 @@ public interface ChronicleQueue extends Closeable {
     @NotNull
     ExcerptTailer createTailer();
 
+    /**
+     * @param name identifies the reader across restarts
+     * @return a new ExcerptTailer which carries on from where the last tailer with this name
+     * stopped reading.
+     */
+    @NotNull
+    default ExcerptTailer createTailer(@NotNull String name) {
+        throw new UnsupportedOperationException("Named tailers are not supported by " + getClass().getSimpleName());
+    }
+
     /**
      * An Appender can be used to writeBytes new excerpts sequentially to the upper.
      *
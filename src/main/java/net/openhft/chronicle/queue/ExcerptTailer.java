@@ -124,6 +124,21 @@ public interface ExcerptTailer extends ExcerptCommon<ExcerptTailer>, Marshallabl
         return false;
     }
 
+    /**
+     * @param streaming whether this tailer reads through the queue once, e.g. to replay its history,
+     *                  so it touches the pages ahead of it, in bursts on its own thread, to have
+     *                  them faulted in sequentially.
+     * @return this ExcerptTailer
+     */
+    @NotNull
+    default ExcerptTailer streaming(boolean streaming) {
+        return this;
+    }
+
+    default boolean streaming() {
+        return false;
+    }
+
     @NotNull
     TailerState state();
 }
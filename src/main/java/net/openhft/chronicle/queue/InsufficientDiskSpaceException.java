@@ -0,0 +1,30 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.core.io.IORuntimeException;
+
+/**
+ * Thrown instead of writing to a queue when the disk it is on has less usable space than the
+ * reserve it was built with, rather than failing part way through an excerpt.
+ */
+public class InsufficientDiskSpaceException extends IORuntimeException {
+    private static final long serialVersionUID = 0L;
+
+    public InsufficientDiskSpaceException(String message) {
+        super(message);
+    }
+}
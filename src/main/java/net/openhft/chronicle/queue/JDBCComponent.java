@@ -17,63 +17,259 @@
 
 package net.openhft.chronicle.queue;
 
+import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.util.ThrowingSupplier;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by peter on 12/04/16.
+ * <p>
+ * With batching enabled, consecutive updates with the same statement are added to one JDBC batch
+ * and the batches are committed together by {@link #commit()}, which publishes a {@link
+ * JDBCResult#updateBatchResult(long, int, String)} per batch. Results are only published once the
+ * updates are committed.
  */
 public class JDBCComponent implements JDBCStatement {
+    private static final int MAX_STATEMENTS = 64;
     @NotNull
     private final Connection connection;
     private final JDBCResult result;
+    private final boolean batching;
+    // prepared statements by query, least recently used first.
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= MAX_STATEMENTS)
+                return false;
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+    // the batches in the current transaction, only the last can have updates not executed.
+    private final List<Batch> batches = new ArrayList<>();
+    private int pendingUpdates = 0;
+    private long firstPendingNS = 0;
 
     public JDBCComponent(@NotNull ThrowingSupplier<Connection, SQLException> connectionSupplier, JDBCResult result) throws SQLException {
+        this(connectionSupplier, result, false);
+    }
+
+    public JDBCComponent(@NotNull ThrowingSupplier<Connection, SQLException> connectionSupplier, JDBCResult result,
+                         boolean batching) throws SQLException {
         connection = connectionSupplier.get();
         this.result = result;
+        this.batching = batching;
+        if (batching)
+            connection.setAutoCommit(false);
     }
 
     @Override
     public void executeUpdate(String query, @NotNull Object... args) {
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            for (int i = 0; i < args.length; i++)
-                ps.setObject(i + 1, args[i]);
-            int count = ps.executeUpdate();
-            // record the count.
-            result.updateResult(count, query, args);
+        if (!batching) {
+            try {
+                PreparedStatement ps = statement(query);
+                setArgs(ps, args);
+                int count = ps.executeUpdate();
+                // record the count.
+                result.updateResult(count, query, args);
+            } catch (Throwable t) {
+                result.updateThrown(t, query, args);
+            }
+            return;
+        }
+
+        Batch batch = batches.isEmpty() ? null : batches.get(batches.size() - 1);
+        try {
+            if (batch == null || !batch.query.equals(query)) {
+                // keep the updates in order.
+                if (batch != null)
+                    batch.execute();
+                batch = new Batch(query, statement(query));
+                batches.add(batch);
+            }
         } catch (Throwable t) {
+            rollback(t);
             result.updateThrown(t, query, args);
+            return;
         }
+        try {
+            batch.add(args);
+        } catch (Throwable t) {
+            result.updateThrown(t, query, args);
+            return;
+        }
+        if (pendingUpdates++ == 0)
+            firstPendingNS = System.nanoTime();
     }
 
     @Override
     public void executeQuery(String query, @NotNull Object... args) {
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            for (int i = 0; i < args.length; i++)
-                ps.setObject(i + 1, args[i]);
-            ResultSet resultSet = ps.executeQuery();
-            ResultSetMetaData metaData = resultSet.getMetaData();
-            int columnCount = metaData.getColumnCount();
-            List<String> headings = new ArrayList<>(columnCount);
-            for (int i = 1; i <= columnCount; i++)
-                headings.add(metaData.getColumnName(i));
-
-            List<List<Object>> rows = new ArrayList<>();
-            while (resultSet.next()) {
-                List<Object> row = new ArrayList<>(columnCount);
-                for (int i = 1; i <= columnCount; i++) {
-                    row.add(resultSet.getObject(i));
+        // the query should see the pending updates.
+        if (!batches.isEmpty()) {
+            try {
+                executePending();
+            } catch (Throwable t) {
+                rollback(t);
+            }
+        }
+
+        List<String> headings = null;
+        List<List<Object>> rows = null;
+        Throwable thrown = null;
+        try {
+            PreparedStatement ps = statement(query);
+            setArgs(ps, args);
+            try (ResultSet resultSet = ps.executeQuery()) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                headings = new ArrayList<>(columnCount);
+                for (int i = 1; i <= columnCount; i++)
+                    headings.add(metaData.getColumnName(i));
+
+                rows = new ArrayList<>();
+                while (resultSet.next()) {
+                    List<Object> row = new ArrayList<>(columnCount);
+                    for (int i = 1; i <= columnCount; i++) {
+                        row.add(resultSet.getObject(i));
+                    }
+                    rows.add(row);
                 }
-                rows.add(row);
             }
+        } catch (Throwable t) {
+            thrown = t;
+        }
+
+        commit();
+        if (thrown == null)
             result.queryResult(headings, rows, query, args);
+        else
+            result.queryThrown(thrown, query, args);
+    }
+
+    /**
+     * @return the number of updates waiting for {@link #commit()}
+     */
+    public int pendingUpdates() {
+        return pendingUpdates;
+    }
+
+    /**
+     * @return how long the oldest pending update has been waiting in nano-seconds, or 0 if none are.
+     */
+    public long pendingNanos() {
+        return pendingUpdates == 0 ? 0 : System.nanoTime() - firstPendingNS;
+    }
 
+    /**
+     * Executes and commits the pending batches, then publishes their results.
+     *
+     * @return true if there was anything to commit
+     */
+    public boolean commit() {
+        if (batches.isEmpty())
+            return false;
+        try {
+            executePending();
+            connection.commit();
         } catch (Throwable t) {
-            result.queryThrown(t, query, args);
+            rollback(t);
+            return true;
+        }
+        for (Batch batch : batches)
+            if (batch.updates > 0)
+                result.updateBatchResult(batch.count, batch.updates, batch.query);
+        clearPending();
+        return true;
+    }
+
+    public void close() {
+        statements.values().forEach(JDBCComponent::closeQuietly);
+        statements.clear();
+    }
+
+    private void executePending() throws SQLException {
+        batches.get(batches.size() - 1).execute();
+    }
+
+    private void rollback(Throwable t) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            Jvm.warn().on(getClass(), "Rollback failed", e);
+        }
+        for (Batch batch : batches)
+            if (batch.updates > 0)
+                result.updateThrown(t, batch.query);
+        clearPending();
+    }
+
+    private void clearPending() {
+        batches.clear();
+        pendingUpdates = 0;
+    }
+
+    @NotNull
+    private PreparedStatement statement(String query) throws SQLException {
+        PreparedStatement ps = statements.get(query);
+        if (ps == null)
+            statements.put(query, ps = connection.prepareStatement(query));
+        return ps;
+    }
+
+    private static void setArgs(@NotNull PreparedStatement ps, @NotNull Object[] args) throws SQLException {
+        for (int i = 0; i < args.length; i++)
+            ps.setObject(i + 1, args[i]);
+    }
+
+    private static void closeQuietly(@NotNull Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            Jvm.debug().on(JDBCComponent.class, e);
+        }
+    }
+
+    static final class Batch {
+        final String query;
+        final PreparedStatement ps;
+        int updates = 0;
+        int executed = 0;
+        long count = 0;
+        // a single update is executed without a JDBC batch.
+        boolean inBatch = false;
+
+        Batch(String query, PreparedStatement ps) {
+            this.query = query;
+            this.ps = ps;
+        }
+
+        void add(@NotNull Object[] args) throws SQLException {
+            if (updates - executed == 1 && !inBatch) {
+                ps.addBatch();
+                inBatch = true;
+            }
+            setArgs(ps, args);
+            if (inBatch)
+                ps.addBatch();
+            updates++;
+        }
+
+        void execute() throws SQLException {
+            if (inBatch) {
+                for (int rows : ps.executeBatch())
+                    if (rows > 0)
+                        count += rows;
+            } else if (updates > executed) {
+                count += ps.executeUpdate();
+            }
+            inBatch = false;
+            executed = updates;
         }
     }
 }
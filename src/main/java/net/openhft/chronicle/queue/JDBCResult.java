@@ -30,4 +30,16 @@ public interface JDBCResult {
     void updateResult(long count, String update, Object... args);
 
     void updateThrown(Throwable t, String update, Object... args);
+
+    /**
+     * The result of a batch of consecutive updates with the same statement, published once they
+     * are committed. By default it is reported as a single update.
+     *
+     * @param count   the total number of rows updated, where the driver reports it
+     * @param updates the number of updates in the batch
+     * @param update  the statement
+     */
+    default void updateBatchResult(long count, int updates, String update) {
+        updateResult(count, update);
+    }
 }
@@ -30,6 +30,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by peter on 06/04/16.
@@ -40,12 +41,25 @@ public class JDBCService implements Closeable {
     private final ChronicleQueue in;
     private final ChronicleQueue out;
     private final ThrowingSupplier<Connection, SQLException> connectionSupplier;
+    private final int maxBatchSize;
+    private final long maxBatchLatencyNS;
     private volatile boolean closed = false;
 
     public JDBCService(@NotNull ChronicleQueue in, ChronicleQueue out, ThrowingSupplier<Connection, SQLException> connectionSupplier) {
+        this(in, out, connectionSupplier, 1, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Commits updates in batches of up to maxBatchSize, or when the first update in a batch has
+     * waited maxBatchLatency, or there is nothing more to read.
+     */
+    public JDBCService(@NotNull ChronicleQueue in, ChronicleQueue out, ThrowingSupplier<Connection, SQLException> connectionSupplier,
+                       int maxBatchSize, long maxBatchLatency, @NotNull TimeUnit unit) {
         this.in = in;
         this.out = out;
         this.connectionSupplier = connectionSupplier;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchLatencyNS = unit.toNanos(maxBatchLatency);
 
         ExecutorService service = Executors.newSingleThreadExecutor(
                 new NamedThreadFactory(in.file().getName() + "-JDBCService", true));
@@ -59,14 +73,22 @@ public class JDBCService implements Closeable {
                     .methodWriterBuilder(JDBCResult.class)
                     .recordHistory(true)
                     .get();
-            JDBCComponent js = new JDBCComponent(connectionSupplier, result);
+            JDBCComponent js = new JDBCComponent(connectionSupplier, result, maxBatchSize > 1);
             MethodReader reader = in.createTailer().afterLastWritten(out).methodReader(js);
             Pauser pauser = Pauser.millis(1, 10);
-            while (!closed) {
-                if (reader.readOne())
-                    pauser.reset();
-                else
-                    pauser.pause();
+            try {
+                while (!closed) {
+                    if (reader.readOne()) {
+                        if (js.pendingUpdates() >= maxBatchSize || js.pendingNanos() >= maxBatchLatencyNS)
+                            js.commit();
+                        pauser.reset();
+                    } else if (!js.commit()) {
+                        pauser.pause();
+                    }
+                }
+                js.commit();
+            } finally {
+                js.close();
             }
         } catch (Throwable t) {
             LOGGER.warn("Run loop exited", t);
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.queue.impl.QueueMetrics;
+import net.openhft.chronicle.queue.impl.QueueMetrics.Counter;
+import net.openhft.chronicle.queue.impl.QueueMetrics.Gauge;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Prints the metrics of one or more queues built with metrics, with the append and read rates and
+ * how far behind each monitored tailer is. Only the metrics file is opened, not the cycle files,
+ * so this can run beside the processes using the queues.
+ */
+public enum QueueMonitorMain {
+    ;
+
+    public static void main(@NotNull String[] args) throws IOException, InterruptedException {
+        final Options options = options();
+        final CommandLine commandLine = parseCommandLine(args, options);
+
+        String[] dirs = commandLine.getOptionValues('d');
+        long intervalMS = Long.parseLong(commandLine.getOptionValue('i', "1000"));
+        long samples = Long.parseLong(commandLine.getOptionValue('n', "-1"));
+
+        QueueMetrics[] metrics = new QueueMetrics[dirs.length];
+        try {
+            for (int i = 0; i < dirs.length; i++) {
+                metrics[i] = QueueMetrics.open(new File(dirs[i]), false);
+                if (metrics[i] == null)
+                    System.out.println("No metrics in " + dirs[i] + ", build the queue with metrics(true)");
+            }
+
+            long[] appended = new long[dirs.length], read = new long[dirs.length];
+            long last = 0;
+            for (long n = 0; samples < 0 || n < samples; n++) {
+                if (n > 0)
+                    Thread.sleep(intervalMS);
+                long now = System.nanoTime();
+                for (int i = 0; i < dirs.length; i++) {
+                    if (metrics[i] == null)
+                        continue;
+                    long appendedNow = metrics[i].get(Counter.APPENDED), readNow = metrics[i].get(Counter.READ);
+                    double secs = n == 0 ? 0 : (now - last) / 1e9;
+                    print(System.out, dirs[i], metrics[i],
+                            secs == 0 ? 0 : (appendedNow - appended[i]) / secs,
+                            secs == 0 ? 0 : (readNow - read[i]) / secs);
+                    appended[i] = appendedNow;
+                    read[i] = readNow;
+                }
+                last = now;
+            }
+        } finally {
+            for (QueueMetrics m : metrics)
+                if (m != null)
+                    m.close();
+        }
+    }
+
+    static void print(@NotNull PrintStream out, String dir, @NotNull QueueMetrics metrics, double appendRate, double readRate) {
+        long lastRoll = metrics.get(Gauge.LAST_ROLL_MS);
+        out.printf("%s last index: 0x%x, write position: %,d, last roll: %s, appended/s: %,.0f, read/s: %,.0f%n",
+                dir,
+                metrics.get(Gauge.LAST_INDEX),
+                metrics.get(Gauge.WRITE_POSITION),
+                lastRoll == 0 ? "none" : new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(lastRoll)),
+                appendRate,
+                readRate);
+        StringBuilder sb = new StringBuilder("  ");
+        for (Counter counter : Counter.values())
+            sb.append(counter).append('=').append(metrics.get(counter)).append(' ');
+        out.println(sb);
+        for (int slot = 0; slot < QueueMetrics.MAX_TAILERS; slot++) {
+            String name = metrics.tailerName(slot);
+            if (name == null)
+                continue;
+            long index = metrics.tailerIndex(slot);
+            if (index == Long.MIN_VALUE) {
+                out.printf("  tailer %s has not read anything%n", name);
+                continue;
+            }
+            long cyclesBehind = metrics.cyclesBehind(slot);
+            out.printf("  tailer %s next index: 0x%x, %s%n", name, index,
+                    cyclesBehind > 0 ? cyclesBehind + " cycles behind" : "lag: " + metrics.lag(slot));
+        }
+    }
+
+    private static CommandLine parseCommandLine(final @NotNull String[] args, final Options options) {
+        CommandLine commandLine = null;
+        try {
+            commandLine = new DefaultParser().parse(options, args);
+
+            if (commandLine.hasOption('h')) {
+                new HelpFormatter().printHelp(QueueMonitorMain.class.getSimpleName(), options);
+                System.exit(0);
+            }
+        } catch (ParseException e) {
+            printUsageAndExit(options);
+        }
+
+        if (!commandLine.hasOption('d')) {
+            System.out.println("Please specify the directories with -d\n");
+            printUsageAndExit(options);
+        }
+
+        return commandLine;
+    }
+
+    private static void printUsageAndExit(final Options options) {
+        final PrintWriter writer = new PrintWriter(System.out);
+        new HelpFormatter().printUsage(writer, 180,
+                QueueMonitorMain.class.getSimpleName(), options);
+        writer.flush();
+        System.exit(1);
+    }
+
+    @NotNull
+    private static Options options() {
+        final Options options = new Options();
+
+        final Option directories = new Option("d", true, "Directories of the queues to monitor");
+        directories.setArgName("directory");
+        directories.setArgs(Option.UNLIMITED_VALUES);
+        options.addOption(directories);
+        addOption(options, "i", "interval-ms", true, "Milliseconds between samples, default 1000");
+        addOption(options, "n", "samples", true, "Print this many samples and exit, default forever");
+        addOption(options, "h", "help-message", false, "Print this help and exit");
+        return options;
+    }
+
+    private static void addOption(final Options options, final String opt, final String argName, final boolean hasArg,
+                                  final String description) {
+        final Option option = new Option(opt, hasArg, description);
+        option.setArgName(argName);
+        options.addOption(option);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how much of a queue is kept on disk. The oldest cycles are deleted while there are more
+ * than {@link #maxCycles()} of them, their files add up to more than {@link #maxBytes()}, or they
+ * ended more than {@link #maxAgeMS()} ago, by the time provider of the queue. The cycle being
+ * written to is always kept.
+ * <p>
+ * A cycle is only kept for the tailers and appenders of the process applying the policy, and for
+ * the named tailers recorded with the queue. A tailer of another process reading a cycle that is
+ * deleted will fail, or lose the excerpts it hasn't read yet, so apply a policy in one process
+ * only, and have the tailers of other processes use names, or keep enough cycles for them.
+ */
+public final class RetentionPolicy {
+    public static final RetentionPolicy NONE = new RetentionPolicy(Integer.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final int maxCycles;
+    private final long maxBytes;
+    private final long maxAgeMS;
+
+    private RetentionPolicy(int maxCycles, long maxBytes, long maxAgeMS) {
+        this.maxCycles = maxCycles;
+        this.maxBytes = maxBytes;
+        this.maxAgeMS = maxAgeMS;
+    }
+
+    @NotNull
+    public static RetentionPolicy keepCycles(int maxCycles) {
+        return NONE.andCycles(maxCycles);
+    }
+
+    @NotNull
+    public static RetentionPolicy keepBytes(long maxBytes) {
+        return NONE.andBytes(maxBytes);
+    }
+
+    @NotNull
+    public static RetentionPolicy keepFor(long duration, @NotNull TimeUnit unit) {
+        return NONE.andFor(duration, unit);
+    }
+
+    @NotNull
+    public RetentionPolicy andCycles(int maxCycles) {
+        if (maxCycles < 1)
+            throw new IllegalArgumentException("At least one cycle has to be kept, maxCycles=" + maxCycles);
+        return new RetentionPolicy(maxCycles, maxBytes, maxAgeMS);
+    }
+
+    @NotNull
+    public RetentionPolicy andBytes(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("maxBytes=" + maxBytes);
+        return new RetentionPolicy(maxCycles, maxBytes, maxAgeMS);
+    }
+
+    @NotNull
+    public RetentionPolicy andFor(long duration, @NotNull TimeUnit unit) {
+        if (duration < 0)
+            throw new IllegalArgumentException("duration=" + duration);
+        return new RetentionPolicy(maxCycles, maxBytes, unit.toMillis(duration));
+    }
+
+    public int maxCycles() {
+        return maxCycles;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public long maxAgeMS() {
+        return maxAgeMS;
+    }
+
+    public boolean isNone() {
+        return maxCycles == Integer.MAX_VALUE && maxBytes == Long.MAX_VALUE && maxAgeMS == Long.MAX_VALUE;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "RetentionPolicy{" +
+                "maxCycles=" + maxCycles +
+                ", maxBytes=" + maxBytes +
+                ", maxAgeMS=" + maxAgeMS +
+                '}';
+    }
+}
@@ -38,4 +38,21 @@ public interface RollCycle {
     long toSequenceNumber(long index);
 
     int toCycle(long index);
+
+    /**
+     * @return how many of the low bits of a cycle number count the files rolled to on size within
+     * a period of {@link #length()}, or 0 if a queue only rolls on time.
+     */
+    default int subCycleBits() {
+        return 0;
+    }
+
+    /**
+     * @param bytes    written to a cycle.
+     * @param excerpts written to a cycle.
+     * @return whether an appender should roll to the next sub cycle before writing another excerpt.
+     */
+    default boolean isFull(long bytes, long excerpts) {
+        return false;
+    }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.core.time.SystemTimeProvider;
+import net.openhft.chronicle.core.time.TimeProvider;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Rolls a queue on time, as another roll cycle does, and also when a cycle reaches a number of
+ * bytes or excerpts, so the files stay about the same size however bursty the writes are.
+ * <p>
+ * The low {@link #subCycleBits()} of a cycle number count the files written in a period of the
+ * time roll cycle, and are added to the file name, e.g. {@code 20161018_003.cq4}. A period starts
+ * with sub cycle 0; once the last sub cycle is reached, it is written to until the period ends.
+ */
+public final class SizeRollCycle implements RollCycle {
+    public static final int DEFAULT_SUB_CYCLE_BITS = 8;
+
+    @NotNull
+    private final RollCycle timeCycle;
+    private final int subCycleBits;
+    private final long maxBytes;
+    private final long maxExcerpts;
+
+    public SizeRollCycle(@NotNull RollCycle timeCycle, int subCycleBits, long maxBytes, long maxExcerpts) {
+        if (timeCycle.subCycleBits() != 0)
+            throw new IllegalArgumentException("timeCycle already has sub cycles, " + timeCycle);
+        if (subCycleBits < 1 || subCycleBits > 16)
+            throw new IllegalArgumentException("subCycleBits=" + subCycleBits);
+        if (maxBytes <= 0 || maxExcerpts <= 0)
+            throw new IllegalArgumentException("maxBytes=" + maxBytes + ", maxExcerpts=" + maxExcerpts);
+        // leave room for cycles twice as far from the epoch as now.
+        int cycle = timeCycle.current(SystemTimeProvider.INSTANCE, 0);
+        long limit = (long) cycle << (subCycleBits + 1);
+        if (limit > Integer.MAX_VALUE || timeCycle.toCycle(timeCycle.toIndex((int) limit, 0)) != limit)
+            throw new IllegalArgumentException("The cycles of " + timeCycle + " are too large for " + subCycleBits + " sub cycle bits");
+        this.timeCycle = timeCycle;
+        this.subCycleBits = subCycleBits;
+        this.maxBytes = maxBytes;
+        this.maxExcerpts = maxExcerpts;
+    }
+
+    /**
+     * @return a roll cycle which also rolls when a cycle has maxBytes written to it.
+     */
+    @NotNull
+    public static SizeRollCycle bytes(@NotNull RollCycle timeCycle, long maxBytes) {
+        return new SizeRollCycle(timeCycle, DEFAULT_SUB_CYCLE_BITS, maxBytes, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return a roll cycle which also rolls when a cycle has maxExcerpts written to it.
+     */
+    @NotNull
+    public static SizeRollCycle excerpts(@NotNull RollCycle timeCycle, long maxExcerpts) {
+        return new SizeRollCycle(timeCycle, DEFAULT_SUB_CYCLE_BITS, Long.MAX_VALUE, maxExcerpts);
+    }
+
+    @NotNull
+    public RollCycle timeCycle() {
+        return timeCycle;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public long maxExcerpts() {
+        return maxExcerpts;
+    }
+
+    @Override
+    public String format() {
+        return timeCycle.format();
+    }
+
+    @Override
+    public int length() {
+        return timeCycle.length();
+    }
+
+    @Override
+    public int defaultIndexCount() {
+        return timeCycle.defaultIndexCount();
+    }
+
+    @Override
+    public int defaultIndexSpacing() {
+        return timeCycle.defaultIndexSpacing();
+    }
+
+    /**
+     * @return the first sub cycle of the current period.
+     */
+    @Override
+    public int current(TimeProvider time, long epoch) {
+        return timeCycle.current(time, epoch) << subCycleBits;
+    }
+
+    @Override
+    public long toIndex(int cycle, long sequenceNumber) {
+        return timeCycle.toIndex(cycle, sequenceNumber);
+    }
+
+    @Override
+    public long toSequenceNumber(long index) {
+        return timeCycle.toSequenceNumber(index);
+    }
+
+    @Override
+    public int toCycle(long index) {
+        return timeCycle.toCycle(index);
+    }
+
+    @Override
+    public int subCycleBits() {
+        return subCycleBits;
+    }
+
+    @Override
+    public boolean isFull(long bytes, long excerpts) {
+        return bytes >= maxBytes || excerpts >= maxExcerpts;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "SizeRollCycle{" +
+                "timeCycle=" + timeCycle +
+                ", subCycleBits=" + subCycleBits +
+                ", maxBytes=" + maxBytes +
+                ", maxExcerpts=" + maxExcerpts +
+                '}';
+    }
+}
@@ -23,8 +23,10 @@ import net.openhft.chronicle.core.OS;
 import net.openhft.chronicle.core.threads.EventLoop;
 import net.openhft.chronicle.core.time.SystemTimeProvider;
 import net.openhft.chronicle.core.time.TimeProvider;
+import net.openhft.chronicle.queue.BackPressurePolicy;
 import net.openhft.chronicle.queue.BufferMode;
 import net.openhft.chronicle.queue.ChronicleQueueBuilder;
+import net.openhft.chronicle.queue.RetentionPolicy;
 import net.openhft.chronicle.queue.RollCycle;
 import net.openhft.chronicle.queue.RollCycles;
 import net.openhft.chronicle.queue.impl.single.StoreRecoveryFactory;
@@ -78,6 +80,21 @@ public abstract class AbstractChronicleQueueBuilder<B extends ChronicleQueueBuil
     private StoreFileListener storeFileListener = (cycle, file) ->
             Jvm.debug().on(getClass(), "File released " + file);
 
+    private RetentionPolicy retentionPolicy = RetentionPolicy.NONE;
+    private boolean binaryHistory = false;
+    private boolean metrics = false;
+    private int namedTailerBatch = 1;
+    private BackPressurePolicy backPressurePolicy = BackPressurePolicy.NONE;
+    private long preallocateBytes = 0;
+    private long diskSpaceReserve = 0;
+    private boolean backgroundIndexing = false;
+    private boolean trackLastWritten = false;
+    private int recordSize = 0;
+    @Nullable
+    private File archivePath = null;
+    private int hotCycles = 2;
+    private long hotBytes = Long.MAX_VALUE;
+
     private boolean readOnly = false;
 
     public AbstractChronicleQueueBuilder(File path) {
@@ -334,6 +351,209 @@ public abstract class AbstractChronicleQueueBuilder<B extends ChronicleQueueBuil
         return storeFileListener;
     }
 
+    public RetentionPolicy retentionPolicy() {
+        return retentionPolicy;
+    }
+
+    /**
+     * @param retentionPolicy which old cycles to delete, from the builder's event loop, or from a
+     *                        new one if none is set.
+     * @return this
+     */
+    public B retentionPolicy(@NotNull RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+        return (B) this;
+    }
+
+    public boolean binaryHistory() {
+        return binaryHistory;
+    }
+
+    /**
+     * @param binaryHistory whether every excerpt starts with a {@link
+     *                      net.openhft.chronicle.queue.BinaryMessageHistory} record. All the
+     *                      appenders and tailers of a queue have to agree on this.
+     * @return this
+     */
+    public B binaryHistory(boolean binaryHistory) {
+        this.binaryHistory = binaryHistory;
+        return (B) this;
+    }
+
+    public boolean metrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics whether to count what the queue does in a {@link QueueMetrics} file.
+     * @return this
+     */
+    public B metrics(boolean metrics) {
+        this.metrics = metrics;
+        return (B) this;
+    }
+
+    public int namedTailerBatch() {
+        return namedTailerBatch;
+    }
+
+    /**
+     * @param namedTailerBatch how many excerpts a named tailer reads between writes of its
+     *                         position. After a restart it may read up to this many excerpts
+     *                         again.
+     * @return this
+     */
+    public B namedTailerBatch(int namedTailerBatch) {
+        if (namedTailerBatch < 1)
+            throw new IllegalArgumentException("Invalid batch, must be at least 1");
+        this.namedTailerBatch = namedTailerBatch;
+        return (B) this;
+    }
+
+    @NotNull
+    public BackPressurePolicy backPressurePolicy() {
+        return backPressurePolicy;
+    }
+
+    /**
+     * @param backPressurePolicy what the appenders do when a named tailer falls too far behind.
+     * @return this
+     */
+    public B backPressurePolicy(@NotNull BackPressurePolicy backPressurePolicy) {
+        this.backPressurePolicy = backPressurePolicy;
+        return (B) this;
+    }
+
+    public long preallocateBytes() {
+        return preallocateBytes;
+    }
+
+    /**
+     * @param preallocateBytes how much of the file for the next cycle to write out in the
+     *                         background, or 0 to grow cycle files as they are written.
+     * @return this
+     */
+    public B preallocateBytes(long preallocateBytes) {
+        if (preallocateBytes < 0)
+            throw new IllegalArgumentException("preallocateBytes=" + preallocateBytes);
+        this.preallocateBytes = preallocateBytes;
+        return (B) this;
+    }
+
+    public long diskSpaceReserve() {
+        return diskSpaceReserve;
+    }
+
+    /**
+     * @param diskSpaceReserve the usable disk space below which appenders throw an {@link
+     *                         net.openhft.chronicle.queue.InsufficientDiskSpaceException}, or 0
+     *                         to only warn.
+     * @return this
+     */
+    public B diskSpaceReserve(long diskSpaceReserve) {
+        if (diskSpaceReserve < 0)
+            throw new IllegalArgumentException("diskSpaceReserve=" + diskSpaceReserve);
+        this.diskSpaceReserve = diskSpaceReserve;
+        return (B) this;
+    }
+
+    public boolean backgroundIndexing() {
+        return backgroundIndexing;
+    }
+
+    /**
+     * @param backgroundIndexing whether to index the excerpts written from the event loop, for
+     *                           appenders which use lazy indexing. Only one process indexes a
+     *                           queue at a time.
+     * @return this
+     */
+    public B backgroundIndexing(boolean backgroundIndexing) {
+        this.backgroundIndexing = backgroundIndexing;
+        return (B) this;
+    }
+
+    public boolean trackLastWritten() {
+        return trackLastWritten;
+    }
+
+    /**
+     * @param trackLastWritten whether appenders record the index and position of the last excerpt
+     *                         written in a file beside the cycles, so tailers find the end of the
+     *                         queue without looking it up in the index.
+     * @return this
+     */
+    public B trackLastWritten(boolean trackLastWritten) {
+        this.trackLastWritten = trackLastWritten;
+        return (B) this;
+    }
+
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * @param recordSize the length of every excerpt in the cycles created, or 0 for excerpts of
+     *                   any length. The position of an excerpt is then worked out from its index,
+     *                   and no index is written. Shorter excerpts are padded with zeros, and meta
+     *                   data can't be written.
+     * @return this
+     */
+    public B recordSize(int recordSize) {
+        if (recordSize < 0)
+            throw new IllegalArgumentException("recordSize=" + recordSize);
+        this.recordSize = recordSize;
+        return (B) this;
+    }
+
+    @Nullable
+    public File archivePath() {
+        return archivePath;
+    }
+
+    /**
+     * @param archivePath the directory closed cycles are copied to, leaving only the most recent
+     *                    {@link #hotCycles(int)} cycles in {@link #path()}. Cycles are read from
+     *                    either directory, or null to keep every cycle in {@link #path()}.
+     * @return this
+     */
+    public B archivePath(@Nullable File archivePath) {
+        this.archivePath = archivePath;
+        return (B) this;
+    }
+
+    public int hotCycles() {
+        return hotCycles;
+    }
+
+    /**
+     * @param hotCycles the number of the most recent cycles kept in {@link #path()} when there is
+     *                  an {@link #archivePath(File)}.
+     * @return this
+     */
+    public B hotCycles(int hotCycles) {
+        if (hotCycles < 1)
+            throw new IllegalArgumentException("hotCycles=" + hotCycles);
+        this.hotCycles = hotCycles;
+        return (B) this;
+    }
+
+    public long hotBytes() {
+        return hotBytes;
+    }
+
+    /**
+     * @param hotBytes the most bytes of cycles kept in {@link #path()} when there is an {@link
+     *                 #archivePath(File)}, e.g. to bound the memory used by a queue on /dev/shm.
+     *                 The last cycle is kept whatever its size.
+     * @return this
+     */
+    public B hotBytes(long hotBytes) {
+        if (hotBytes < 0)
+            throw new IllegalArgumentException("hotBytes=" + hotBytes);
+        this.hotBytes = hotBytes;
+        return (B) this;
+    }
+
     public B sourceId(int sourceId) {
         if (sourceId < 0)
             throw new IllegalArgumentException("Invalid source Id, must be positive");
@@ -32,4 +32,12 @@ public interface ExcerptContext {
 
     long timeoutMS();
 
+    /**
+     * @return the metrics of the queue, or null if it doesn't keep any.
+     */
+    @Nullable
+    default QueueMetrics metrics() {
+        return null;
+    }
+
 }
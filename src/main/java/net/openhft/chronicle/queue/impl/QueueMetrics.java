@@ -0,0 +1,305 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue.impl;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.MappedFile;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.Closeable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Counters for a queue, kept in a memory mapped file beside the cycle files so they can be read
+ * by other processes without opening the queue.
+ * <p>
+ * The file starts with a 64 byte header of {@code [magic: 4 bytes][version: 4 bytes][counters: 4
+ * bytes][stripes: 4 bytes]}. Each counter is striped over {@link #STRIPES} cache lines, picked by
+ * thread id, so threads updating the same counter rarely contend; a counter's value is the sum of
+ * its stripes.
+ * <p>
+ * The counters are followed by a cache line per {@link Gauge}, updated with ordered writes, and
+ * {@link #MAX_TAILERS} slots of {@code [state: 4 bytes][name length: 4 bytes][name: 48
+ * bytes][index: 8 bytes]} for the next index to be read by each registered tailer, so a monitor
+ * can work out how far behind each tailer is, e.g. with {@link
+ * net.openhft.chronicle.queue.QueueMonitorMain}.
+ */
+public class QueueMetrics implements Closeable {
+    public static final String FILE_NAME = "metadata.cq4s";
+    static final int MAGIC = 0x53345143; // "CQ4S"
+    static final int VERSION = 1;
+    static final int CACHE_LINE = 64;
+    static final int STRIPES = 8;
+    static final int MAX_COUNTERS = 32;
+    static final long COUNTERS = CACHE_LINE;
+    static final long COUNTERS_END = COUNTERS + (long) MAX_COUNTERS * STRIPES * CACHE_LINE;
+    static final int MAX_GAUGES = 16;
+    static final long GAUGES = COUNTERS_END;
+    static final long TAILERS = GAUGES + MAX_GAUGES * CACHE_LINE;
+    public static final int MAX_TAILERS = 64;
+    static final int MAX_NAME_LENGTH = 48;
+    static final int TAILER_NAME_LENGTH = 4, TAILER_NAME = 8, TAILER_INDEX = 56;
+    static final long SIZE = TAILERS + MAX_TAILERS * CACHE_LINE;
+    private static final int EMPTY = 0, CLAIMED = 1, REGISTERED = 2;
+
+    @NotNull
+    private final MappedFile mappedFile;
+    @NotNull
+    private final BytesStore store;
+    private volatile boolean closed = false;
+
+    private QueueMetrics(@NotNull MappedFile mappedFile) throws IOException {
+        this.mappedFile = mappedFile;
+        this.store = mappedFile.acquireByteStore(0);
+        if (store.compareAndSwapInt(4, 0, VERSION)) {
+            store.writeOrderedInt(8, Counter.values().length);
+            store.writeOrderedInt(12, STRIPES);
+            store.writeOrderedInt(0, MAGIC);
+        } else {
+            for (int i = 0; i < 1000 && store.readVolatileInt(0) == 0; i++)
+                Thread.yield();
+            int magic = store.readVolatileInt(0), version = store.readVolatileInt(4);
+            if (magic != MAGIC || version != VERSION) {
+                close();
+                throw new IllegalStateException("Not a metrics file, or a different version, magic=" +
+                        Integer.toHexString(magic) + ", version=" + version + " in " + mappedFile.file());
+            }
+        }
+    }
+
+    /**
+     * @return the metrics of the queue in dir, or null if there are none and create is false.
+     */
+    @Nullable
+    public static QueueMetrics open(@NotNull File dir, boolean create) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!create && !file.exists())
+            return null;
+        return new QueueMetrics(MappedFile.mappedFile(file, OS.pageAlign(SIZE)));
+    }
+
+    public void increment(@NotNull Counter counter) {
+        add(counter, 1);
+    }
+
+    public void add(@NotNull Counter counter, long delta) {
+        long offset = offset(counter, (int) Thread.currentThread().getId() & (STRIPES - 1));
+        for (; ; ) {
+            long value = store.readVolatileLong(offset);
+            if (store.compareAndSwapLong(offset, value, value + delta))
+                return;
+        }
+    }
+
+    /**
+     * Counts an event and how long it took, e.g. {@link Counter#ROLLS} and {@link
+     * Counter#ROLL_NANOS}.
+     */
+    public void add(@NotNull Counter count, @NotNull Counter total, long value) {
+        add(count, 1);
+        add(total, value);
+    }
+
+    public long get(@NotNull Counter counter) {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++)
+            sum += store.readVolatileLong(offset(counter, i));
+        return sum;
+    }
+
+    public void set(@NotNull Gauge gauge, long value) {
+        store.writeOrderedLong(offset(gauge), value);
+    }
+
+    /**
+     * Sets the gauge if value is higher, e.g. for indices written by more than one appender.
+     */
+    public void max(@NotNull Gauge gauge, long value) {
+        long offset = offset(gauge);
+        if (store.readVolatileLong(offset) < value)
+            store.writeOrderedLong(offset, value);
+    }
+
+    public long get(@NotNull Gauge gauge) {
+        return store.readVolatileLong(offset(gauge));
+    }
+
+    /**
+     * Counts an excerpt appended, and records it as the last one written.
+     */
+    public void appended(long bytes, long index, long position) {
+        add(Counter.APPENDED, Counter.APPENDED_BYTES, bytes);
+        if (index >= 0)
+            max(Gauge.LAST_INDEX, index);
+        set(Gauge.WRITE_POSITION, position);
+    }
+
+    /**
+     * Registers a tailer, or finds the slot it had before, so its reads can be recorded with {@link
+     * #tailerIndex(int, long)}.
+     *
+     * @param name up to {@link #MAX_NAME_LENGTH} characters identifying the tailer.
+     * @return the slot of the tailer, or -1 if all the slots are taken.
+     */
+    public int registerTailer(@NotNull String name) {
+        if (name.length() > MAX_NAME_LENGTH)
+            name = name.substring(0, MAX_NAME_LENGTH);
+        for (int i = 0; i < MAX_TAILERS; i++)
+            if (name.equals(tailerName(i)))
+                return i;
+
+        for (int i = 0; i < MAX_TAILERS; i++) {
+            long offset = TAILERS + (long) i * CACHE_LINE;
+            if (!store.compareAndSwapInt(offset, EMPTY, CLAIMED))
+                continue;
+            store.writeOrderedLong(offset + TAILER_INDEX, Long.MIN_VALUE);
+            for (int j = 0; j < name.length(); j++)
+                store.writeByte(offset + TAILER_NAME + j, (byte) name.charAt(j));
+            store.writeInt(offset + TAILER_NAME_LENGTH, name.length());
+            store.writeOrderedInt(offset, REGISTERED);
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Records the next index the tailer in slot will read.
+     */
+    public void tailerIndex(int slot, long index) {
+        store.writeOrderedLong(TAILERS + (long) slot * CACHE_LINE + TAILER_INDEX, index);
+    }
+
+    /**
+     * @return the next index the tailer in slot will read, or {@link Long#MIN_VALUE} if it hasn't
+     * read anything.
+     */
+    public long tailerIndex(int slot) {
+        return store.readVolatileLong(TAILERS + (long) slot * CACHE_LINE + TAILER_INDEX);
+    }
+
+    /**
+     * @return the name of the tailer in slot, or null if no tailer has registered it.
+     */
+    @Nullable
+    public String tailerName(int slot) {
+        long offset = TAILERS + (long) slot * CACHE_LINE;
+        if (store.readVolatileInt(offset) != REGISTERED)
+            return null;
+        int length = store.readInt(offset + TAILER_NAME_LENGTH);
+        StringBuilder sb = new StringBuilder(length);
+        for (int j = 0; j < length; j++)
+            sb.append((char) (store.readByte(offset + TAILER_NAME + j) & 0xFF));
+        return sb.toString();
+    }
+
+    /**
+     * @return how many messages the tailer in slot has still to read in the last cycle written, or
+     * -1 if it is on an earlier cycle, in which case {@link #cyclesBehind(int)} is more useful.
+     */
+    public long lag(int slot) {
+        long next = tailerIndex(slot), last = get(Gauge.LAST_INDEX);
+        if (next == Long.MIN_VALUE || cyclesBehind(slot) > 0)
+            return -1;
+        return Math.max(0, last + 1 - next);
+    }
+
+    public long cyclesBehind(int slot) {
+        long next = tailerIndex(slot), last = get(Gauge.LAST_INDEX);
+        int shift = (int) get(Gauge.CYCLE_SHIFT);
+        if (next == Long.MIN_VALUE)
+            return -1;
+        return Math.max(0, (last >> shift) - (next >> shift));
+    }
+
+    private static long offset(@NotNull Gauge gauge) {
+        return GAUGES + (long) gauge.ordinal() * CACHE_LINE;
+    }
+
+    private static long offset(@NotNull Counter counter, int stripe) {
+        return COUNTERS + ((long) counter.ordinal() * STRIPES + stripe) * CACHE_LINE;
+    }
+
+    @NotNull
+    protected BytesStore bytesStore() {
+        return store;
+    }
+
+    @NotNull
+    public File file() {
+        return mappedFile.file();
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        store.release();
+        mappedFile.release();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("QueueMetrics{");
+        for (Counter counter : Counter.values())
+            sb.append(counter.ordinal() == 0 ? "" : ", ").append(counter).append('=').append(get(counter));
+        for (Gauge gauge : Gauge.values())
+            sb.append(", ").append(gauge).append('=').append(get(gauge));
+        return sb.append('}').toString();
+    }
+
+    public enum Counter {
+        APPENDED,
+        APPENDED_BYTES,
+        READ,
+        READ_BYTES,
+        // headers written again as the cycle rolled under the appender.
+        HEADER_RETRIES,
+        RECOVERIES,
+        ROLLS,
+        ROLL_NANOS,
+        STORE_ACQUIRES,
+        STORE_ACQUIRE_NANOS,
+        LINEAR_SCANS,
+        // excerpts scanned past by linear scans.
+        LINEAR_SCAN_LENGTH,
+        PRETOUCHED_PAGES,
+        // pages pretouched before they were written to.
+        PRETOUCH_HITS,
+        // excerpts dropped as a named tailer was too far behind.
+        DROPPED
+    }
+
+    public enum Gauge {
+        // the position of the last excerpt written in its cycle file.
+        WRITE_POSITION,
+        LAST_INDEX,
+        LAST_ROLL_MS,
+        // the number of bits of an index for the sequence number within a cycle.
+        CYCLE_SHIFT,
+        // bytes of the cycle being indexed in the background still to be indexed.
+        INDEX_LAG
+    }
+}
@@ -40,6 +40,9 @@ public class RollingResourcesCache {
     @NotNull
     private final Resource[] values;
     private final int length;
+    private final int subCycleBits;
+    // the digits of the sub cycle added to a file name.
+    private final int subCycleDigits;
 
     private final long epoch;
     @NotNull
@@ -48,14 +51,17 @@ public class RollingResourcesCache {
     public RollingResourcesCache(@NotNull final RollCycle cycle, long epoch,
                                  @NotNull Function<String, File> nameToFile,
                                  @NotNull Function<File, String> fileToName) {
-        this(cycle.length(), cycle.format(), epoch, nameToFile, fileToName);
+        this(cycle.length(), cycle.subCycleBits(), cycle.format(), epoch, nameToFile, fileToName);
     }
 
     private RollingResourcesCache(final int length,
+                                  final int subCycleBits,
                                   @NotNull String format, long epoch,
                                   @NotNull Function<String, File> nameToFile,
                                   @NotNull Function<File, String> fileToName) {
         this.length = length;
+        this.subCycleBits = subCycleBits;
+        this.subCycleDigits = subCycleBits == 0 ? 0 : Integer.toString((1 << subCycleBits) - 1).length();
         this.epoch = epoch;
         this.fileToName = fileToName;
         this.values = new Resource[SIZE];
@@ -74,17 +80,37 @@ public class RollingResourcesCache {
      */
     @NotNull
     public Resource resourceFor(long cycle) {
-        long millis = cycle * length - epoch;
-        int hash = Maths.hash32(millis) & (SIZE - 1);
+        long millis = (cycle >> subCycleBits) * length - epoch;
+        int hash = Maths.hash32(cycle) & (SIZE - 1);
         Resource dv = values[hash];
-        if (dv == null || dv.millis != millis) {
+        if (dv == null || dv.cycle != cycle) {
             @NotNull String text = formatter.format(Instant.ofEpochMilli(millis));
-            values[hash] = dv = new Resource(millis, text, fileFactory.apply(text));
+            if (subCycleBits > 0)
+                text = text + '_' + subCycleText(cycle & ((1 << subCycleBits) - 1));
+            values[hash] = dv = new Resource(cycle, millis, text, fileFactory.apply(text));
         }
         return dv;
     }
 
+    @NotNull
+    private String subCycleText(long subCycle) {
+        StringBuilder sb = new StringBuilder(subCycleDigits);
+        String digits = Long.toString(subCycle);
+        for (int i = digits.length(); i < subCycleDigits; i++)
+            sb.append('0');
+        return sb.append(digits).toString();
+    }
+
     public int parseCount(@NotNull String name) {
+        if (subCycleBits > 0) {
+            int sep = name.lastIndexOf('_');
+            return (parsePeriod(name.substring(0, sep)) << subCycleBits)
+                    | Integer.parseInt(name.substring(sep + 1));
+        }
+        return parsePeriod(name);
+    }
+
+    private int parsePeriod(@NotNull String name) {
         TemporalAccessor parse = formatter.parse(name);
         long epochDay = parse.getLong(ChronoField.EPOCH_DAY) * 86400;
         if (parse.isSupported(ChronoField.SECOND_OF_DAY))
@@ -93,7 +119,17 @@ public class RollingResourcesCache {
     }
 
     public Long toLong(File file) {
-        TemporalAccessor parse = formatter.parse(fileToName.apply(file));
+        String name = fileToName.apply(file);
+        if (subCycleBits > 0) {
+            int sep = name.lastIndexOf('_');
+            return (periodToLong(name.substring(0, sep)) << subCycleBits)
+                    | Integer.parseInt(name.substring(sep + 1));
+        }
+        return periodToLong(name);
+    }
+
+    private long periodToLong(@NotNull String name) {
+        TemporalAccessor parse = formatter.parse(name);
         if (length == 86400_000L) {
             return parse.getLong(ChronoField.EPOCH_DAY);
         } else
@@ -101,11 +137,13 @@ public class RollingResourcesCache {
     }
 
     public static class Resource {
+        public final long cycle;
         public final long millis;
         public final String text;
         public final File path;
 
-        Resource(long millis, String text, File path) {
+        Resource(long cycle, long millis, String text, File path) {
+            this.cycle = cycle;
             this.millis = millis;
             this.text = text;
             this.path = path;
@@ -29,4 +29,8 @@ public interface StoreFileListener {
     }
 
     void onReleased(int cycle, File file);
+
+    default void onDeleted(int cycle, File file) {
+
+    }
 }
@@ -20,6 +20,7 @@ import net.openhft.chronicle.queue.RollDetails;
 import net.openhft.chronicle.queue.TailerDirection;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
 import java.text.ParseException;
 import java.util.Iterator;
 import java.util.Map;
@@ -100,6 +101,23 @@ public class WireStorePool {
         }
     }
 
+    /**
+     * Deletes the file of a cycle, unless the cycle is in use by a tailer or appender of this queue.
+     *
+     * @return true if the file was deleted
+     */
+    public synchronized boolean deleteIfUnused(int cycle, long epoch, @NotNull File file) {
+        if (isClosed || stores.containsKey(new RollDetails(cycle, epoch)))
+            return false;
+        if (!file.delete()) {
+            if (file.exists())
+                LOGGER.warn("Unable to delete {}", file);
+            return false;
+        }
+        storeFileListener.onDeleted(cycle, file);
+        return true;
+    }
+
     /**
      * list cycles between ( inclusive )
      *
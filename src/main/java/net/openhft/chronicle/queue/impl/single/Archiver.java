@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.MappedBytes;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.threads.EventHandler;
+import net.openhft.chronicle.core.threads.HandlerPriority;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import net.openhft.chronicle.queue.impl.WireStore;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Copies the closed cycles of a queue from its directory to the archive from its event loop, and
+ * deletes them from the queue directory once they are older than the most recent {@link
+ * SingleChronicleQueue#hotCycles()} cycles, or than the cycles which fit in {@link
+ * SingleChronicleQueue#hotBytes()}. With the queue directory in memory, e.g. on /dev/shm, and the
+ * archive on disk, appenders and tailers keeping up work at memory speed while the history is
+ * still kept.
+ * <p>
+ * A cycle is first terminated with an end of file marker, so nothing more is written to it, then
+ * copied as {@code <cycle file>.tmp} in the archive, compared with the original and renamed, so
+ * the archive never has part of a cycle. The original is only deleted when no tailer or appender
+ * of this queue is using it, otherwise it is tried again later. Until then the original is read in
+ * preference to the copy.
+ */
+class Archiver implements EventHandler {
+    private static final long CHECK_INTERVAL_MS = Long.getLong("cq.archiveCheckMS", 1000);
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    // the cycles still in the queue directory known to have a complete copy in the archive.
+    private final Set<Integer> spilled = new HashSet<>();
+    private long nextCheck = 0;
+
+    Archiver(@NotNull SingleChronicleQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public boolean action() throws InvalidEventHandlerException {
+        if (queue.isClosed())
+            throw new InvalidEventHandlerException();
+
+        long now = System.currentTimeMillis();
+        if (now < nextCheck)
+            return false;
+        nextCheck = now + CHECK_INTERVAL_MS;
+        try {
+            return archive() > 0;
+        } catch (Exception e) {
+            Jvm.warn().on(getClass(), "Unable to archive the cycles of " + queue.file(), e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of cycles copied or moved to the archive.
+     */
+    int archive() throws IOException {
+        File archivePath = queue.archivePath();
+        if (archivePath == null || queue.isClosed())
+            return 0;
+        NavigableSet<Integer> cycles = queue.cyclesBetween(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        int count = 0;
+        int newer = 0;
+        long hotBytes = 0;
+        boolean deleted = false;
+        for (int cycle : cycles.descendingSet()) {
+            File file = queue.fileForCycle(cycle);
+            if (!file.getParentFile().equals(queue.file()))
+                continue;
+            newer++;
+            hotBytes += file.length();
+            // the last cycle may still be written to.
+            if (cycle == cycles.last())
+                continue;
+            archivePath.mkdirs();
+            boolean copied = spilled.contains(cycle);
+            if (!copied && spill(cycle, file, new File(archivePath, file.getName()))) {
+                spilled.add(cycle);
+                copied = true;
+                count++;
+            }
+            if (copied && (newer > queue.hotCycles() || hotBytes > queue.hotBytes())
+                    && queue.deleteIfUnused(cycle, file)) {
+                spilled.remove(cycle);
+                deleted = true;
+                count++;
+            }
+        }
+        if (deleted)
+            // rescan the directories on the next call to firstCycle()
+            queue.firstAndLastCycleTime = 0;
+        return count;
+    }
+
+    /**
+     * @return whether the archive has a complete copy of the cycle.
+     */
+    private boolean spill(int cycle, @NotNull File file, @NotNull File archived) throws IOException {
+        if (!archived.exists()) {
+            writeEOF(cycle);
+            File tmp = new File(archived.getPath() + ".tmp");
+            tmp.delete();
+            copy(file, tmp);
+            if (!sameContents(file, tmp)) {
+                tmp.delete();
+                Jvm.warn().on(getClass(), "The copy of " + file + " in the archive differs, will try again");
+                return false;
+            }
+            if (!tmp.renameTo(archived)) {
+                tmp.delete();
+                throw new IOException("Unable to rename " + tmp + " to " + archived);
+            }
+            return true;
+        }
+        if (sameContents(file, archived))
+            return true;
+        // copied before the end of file marker was added.
+        archived.delete();
+        return false;
+    }
+
+    /**
+     * Adds an end of file marker to a cycle, if it hasn't one already.
+     */
+    private void writeEOF(int cycle) throws IOException {
+        WireStore store = queue.storeForCycle(cycle, queue.epoch(), false);
+        if (store == null)
+            return;
+        try {
+            MappedBytes bytes = queue.mappedBytes(store.file());
+            try {
+                store.writeEOF(queue.wireType().apply(bytes), queue.timeoutMS);
+            } finally {
+                bytes.release();
+            }
+        } catch (TimeoutException e) {
+            throw new IOException("Unable to terminate cycle " + cycle, e);
+        } finally {
+            queue.release(store);
+        }
+    }
+
+    private static void copy(@NotNull File from, @NotNull File to) throws IOException {
+        try (FileChannel in = FileChannel.open(from.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(to.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            for (long pos = 0; pos < size; )
+                pos += in.transferTo(pos, size - pos, out);
+            out.force(false);
+        }
+    }
+
+    private static boolean sameContents(@NotNull File a, @NotNull File b) throws IOException {
+        try (FileChannel ca = FileChannel.open(a.toPath(), StandardOpenOption.READ);
+             FileChannel cb = FileChannel.open(b.toPath(), StandardOpenOption.READ)) {
+            long size = ca.size();
+            if (size != cb.size())
+                return false;
+            ByteBuffer ba = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            ByteBuffer bb = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            for (long pos = 0; pos < size; pos += BUFFER_SIZE) {
+                ba.clear();
+                bb.clear();
+                int length = (int) Math.min(BUFFER_SIZE, size - pos);
+                ba.limit(length);
+                bb.limit(length);
+                while (ba.hasRemaining() && ca.read(ba, pos + ba.position()) >= 0) ;
+                while (bb.hasRemaining() && cb.read(bb, pos + bb.position()) >= 0) ;
+                ba.flip();
+                bb.flip();
+                if (!ba.equals(bb))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    @NotNull
+    @Override
+    public HandlerPriority priority() {
+        return HandlerPriority.MONITOR;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.queue.BackPressurePolicy;
+import net.openhft.chronicle.queue.BackPressurePolicy.Listener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies a {@link BackPressurePolicy} for one appender. The lag is measured to the last excerpt
+ * written to the queue by any appender. Between checks it is assumed to grow by one for each
+ * excerpt written, so the named tailers are only looked at every {@link
+ * BackPressurePolicy#checkEvery()} excerpts, or when that estimate reaches the limit.
+ */
+class BackPressure {
+    @NotNull
+    private final SingleChronicleQueue queue;
+    @NotNull
+    private final BackPressurePolicy policy;
+    private long lagAtCheck = 0;
+    private int sinceCheck = Integer.MAX_VALUE;
+    // finds the end of the queue, created on the first check.
+    @Nullable
+    private SingleChronicleQueueExcerpts.StoreTailer endTailer;
+
+    BackPressure(@NotNull SingleChronicleQueue queue, @NotNull BackPressurePolicy policy) {
+        this.queue = queue;
+        this.policy = policy;
+    }
+
+    /**
+     * @return whether the excerpt should be written, or dropped.
+     */
+    boolean beforeAppend() {
+        if (sinceCheck < policy.checkEvery() && lagAtCheck + sinceCheck < policy.maxLag()) {
+            sinceCheck++;
+            return true;
+        }
+        long lag = lag(lastIndex());
+        if (lag < policy.maxLag())
+            return true;
+
+        switch (policy.action()) {
+            case DROP:
+                return false;
+            case CALLBACK:
+                Listener listener = policy.listener();
+                if (listener != null)
+                    listener.onBackPressure(lag);
+                return true;
+            default:
+                awaitLag(lag);
+                return true;
+        }
+    }
+
+    private void awaitLag(long lag) {
+        long timeout = System.currentTimeMillis() + policy.timeoutMS();
+        boolean spin = policy.action() == BackPressurePolicy.Action.SPIN;
+        while (lag >= policy.maxLag()) {
+            if (System.currentTimeMillis() > timeout || queue.isClosed())
+                throw new IllegalStateException("The slowest named tailer of " + queue.file() +
+                        " has " + lag + " excerpts to read after waiting " + policy.timeoutMS() + " ms");
+            if (spin)
+                Thread.yield();
+            else
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            lag = lag(lastIndex());
+        }
+    }
+
+    /**
+     * @return the last index written by any appender of the queue, or Long.MIN_VALUE if none.
+     */
+    private long lastIndex() {
+        if (endTailer == null)
+            endTailer = new SingleChronicleQueueExcerpts.StoreTailer(queue);
+        return endTailer.approximateLastIndex();
+    }
+
+    void release() {
+        if (endTailer != null) {
+            endTailer.release();
+            endTailer = null;
+        }
+    }
+
+    /**
+     * @return the excerpts up to and including lastIndex the slowest named tailer has to read.
+     */
+    long lag(long lastIndex) {
+        sinceCheck = 0;
+        lagAtCheck = 0;
+        TailerPositions positions = queue.tailerPositions(false);
+        if (positions == null || lastIndex == Long.MIN_VALUE)
+            return 0;
+        long lowest = positions.lowestIndex();
+        if (lowest == TailerPositions.NO_INDEX)
+            return 0;
+        // e.g. a tailer named before anything was written, or behind cycles since deleted.
+        lowest = Math.max(lowest, queue.firstIndex());
+        if (lowest > lastIndex)
+            return 0;
+        try {
+            lagAtCheck = queue.countExcerpts(lowest, lastIndex + 1);
+        } catch (IllegalStateException e) {
+            // a cycle in between can't be read, assume the tailer is too far behind.
+            lagAtCheck = Long.MAX_VALUE / 2;
+        }
+        return lagAtCheck;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.MappedFile;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.threads.EventHandler;
+import net.openhft.chronicle.core.threads.HandlerPriority;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import net.openhft.chronicle.queue.BinaryMessageHistory;
+import net.openhft.chronicle.queue.impl.QueueMetrics;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueExcerpts.StoreTailer;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Follows the excerpts written to a queue from its event loop and adds them to the index, so
+ * appenders with {@link net.openhft.chronicle.queue.ExcerptAppender#lazyIndexing(boolean)} don't
+ * leave tailers to scan for them.
+ * <p>
+ * Only one indexer works on a queue at a time, across processes. It holds a lease of {@code
+ * [owner: 8 bytes][expiry ms: 8 bytes]} in a sidecar file, renewed on each action; another indexer
+ * takes over once the lease has expired. An indexer only works once it has renewed the expiry and
+ * is still the owner, so of two taking over at once, at most one does. A new indexer starts from the last cycle, leaving the
+ * cycles before it to be indexed by the tailers which read them.
+ */
+class BackgroundIndexer implements EventHandler {
+    static final String LEASE_FILE = "indexer-lease.cq4t";
+    private static final long LEASE_MS = Long.getLong("cq.indexerLeaseMS", 5_000);
+    private static final int MAX_PER_ACTION = 1024;
+    private static final int OWNER = 0, EXPIRY = 8;
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    private final long id = ((long) OS.getProcessId() << 32) | COUNTER.incrementAndGet();
+    @Nullable
+    private final QueueMetrics metrics;
+    @Nullable
+    private MappedFile mappedFile;
+    @Nullable
+    private BytesStore lease;
+    @Nullable
+    private StoreTailer tailer;
+    private long lastPosition = 0;
+    private long lag = 0;
+    private boolean closed = false;
+
+    BackgroundIndexer(@NotNull SingleChronicleQueue queue) {
+        this.queue = queue;
+        this.metrics = queue.metrics();
+    }
+
+    @Override
+    public synchronized boolean action() throws InvalidEventHandlerException {
+        if (closed || queue.isClosed()) {
+            close();
+            throw new InvalidEventHandlerException();
+        }
+        try {
+            if (!acquireLease(System.currentTimeMillis())) {
+                // another indexer may have taken over, start again if this one gets it back.
+                releaseTailer();
+                return false;
+            }
+            if (tailer == null && !start())
+                return false;
+
+            int count = 0;
+            while (count < MAX_PER_ACTION && indexNext())
+                count++;
+            updateLag();
+            return count > 0;
+
+        } catch (Exception e) {
+            Jvm.warn().on(getClass(), "Unable to index " + queue.file(), e);
+            releaseTailer();
+            return false;
+        }
+    }
+
+    private boolean start() {
+        int lastCycle = queue.lastCycle();
+        if (lastCycle == Integer.MIN_VALUE)
+            return false;
+        StoreTailer tailer = new StoreTailer(queue);
+        if (queue.binaryHistory)
+            // so the history of this thread isn't changed.
+            tailer.history(new BinaryMessageHistory());
+        if (!tailer.moveToIndex(queue.rollCycle().toIndex(lastCycle, 0)))
+            tailer.toStart();
+        this.tailer = tailer;
+        return true;
+    }
+
+    /**
+     * Drops the tailer, releasing its store so the cycle can be deleted.
+     */
+    private void releaseTailer() {
+        if (tailer != null) {
+            tailer.release();
+            tailer = null;
+        }
+    }
+
+    private boolean indexNext() throws StreamCorruptedException {
+        assert tailer != null;
+        try (DocumentContext dc = tailer.readingDocument()) {
+            if (!dc.isPresent())
+                return false;
+            lastPosition = tailer.headerPosition;
+            long sequenceNumber = queue.rollCycle().toSequenceNumber(dc.index());
+            tailer.store.setPositionForSequenceNumber(tailer, sequenceNumber, lastPosition);
+            return true;
+        }
+    }
+
+    private void updateLag() {
+        assert tailer != null;
+        lag = tailer.store == null ? 0 : Math.max(0, tailer.store.writePosition() - lastPosition);
+        if (metrics != null)
+            metrics.set(QueueMetrics.Gauge.INDEX_LAG, lag);
+    }
+
+    /**
+     * @return how many bytes of the cycle being indexed are still to be indexed.
+     */
+    synchronized long lag() {
+        return lag;
+    }
+
+    private boolean acquireLease(long now) throws IOException {
+        if (lease == null) {
+            mappedFile = MappedFile.mappedFile(new File(queue.file(), LEASE_FILE), OS.pageSize());
+            lease = mappedFile.acquireByteStore(0);
+        }
+        long owner = lease.readVolatileLong(OWNER);
+        if (owner != id) {
+            if (owner != 0 && lease.readVolatileLong(EXPIRY) > now)
+                return false;
+            if (!lease.compareAndSwapLong(OWNER, owner, id))
+                return false;
+        }
+        lease.writeOrderedLong(EXPIRY, now + LEASE_MS);
+        // another indexer may have read the expiry before it was renewed and taken the lease.
+        return lease.readVolatileLong(OWNER) == id;
+    }
+
+    synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        releaseTailer();
+        if (lease != null) {
+            // let another indexer take over straight away.
+            lease.compareAndSwapLong(OWNER, id, 0);
+            lease.release();
+            lease = null;
+        }
+        if (mappedFile != null) {
+            mappedFile.release();
+            mappedFile = null;
+        }
+    }
+
+    @NotNull
+    @Override
+    public HandlerPriority priority() {
+        return HandlerPriority.MONITOR;
+    }
+}
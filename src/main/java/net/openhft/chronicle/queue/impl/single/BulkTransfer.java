@@ -0,0 +1,262 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.BinaryMessageHistory;
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.queue.impl.WireStore;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueExcerpts.InternalAppender;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueExcerpts.StoreTailer;
+import net.openhft.chronicle.threads.LongPauser;
+import net.openhft.chronicle.threads.Pauser;
+import net.openhft.chronicle.wire.Wires;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves excerpts between queues as raw file ranges rather than message by message.
+ * <p>
+ * An export is a sequence of chunks, one per cycle, of {@code [cycle: 4 bytes][first sequence
+ * number: 8 bytes][length: 8 bytes]} followed by {@code length} bytes copied from the cycle file
+ * with {@link FileChannel#transferTo(long, long, WritableByteChannel)}. The bytes are the excerpts
+ * as stored, headers included, so the index pages stored as meta data between them are skipped on
+ * import and the excerpts are indexed again by the importing appender. A cycle still being written
+ * to is exported up to its last complete excerpt.
+ * <p>
+ * The excerpts keep the history records they start with, if the queues have {@code binaryHistory},
+ * so both queues have to agree on it. An imported excerpt's record is read into the history of the
+ * importing thread and written again by the appender, with the time of import added.
+ * <p>
+ * The channel written to may be non blocking, in which case the export backs off while it is full.
+ */
+class BulkTransfer {
+    static final int CHUNK_HEADER_SIZE = 4 + 8 + 8;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private BulkTransfer() {
+    }
+
+    static long exportTo(@NotNull SingleChronicleQueue queue, @NotNull WritableByteChannel out,
+                         long fromIndex, long toIndex) throws IOException {
+        RollCycle rollCycle = queue.rollCycle();
+        int fromCycle = rollCycle.toCycle(fromIndex);
+        int toCycle = rollCycle.toCycle(toIndex);
+        StoreTailer tailer = new StoreTailer(queue);
+        Bytes<ByteBuffer> header = Bytes.elasticByteBuffer(CHUNK_HEADER_SIZE);
+        Pauser pauser = new LongPauser(0, 100, 50, 2_000, TimeUnit.MICROSECONDS);
+        long total = 0;
+        try {
+            for (int cycle : queue.cyclesBetween(fromCycle, toCycle)) {
+                long firstSequence = cycle == fromCycle ? rollCycle.toSequenceNumber(fromIndex) : 0;
+                if (!tailer.moveToIndex(rollCycle.toIndex(cycle, firstSequence)))
+                    continue;
+                WireStore store = tailer.store;
+                Bytes<?> bytes = tailer.wire().bytes();
+                long start = bytes.readPosition();
+
+                long lastPosition = cycle == toCycle && tailer.moveToIndex(toIndex)
+                        ? bytes.readPosition()
+                        : store.writePosition();
+                long end = endOfComplete(bytes, start, lastPosition);
+                if (end <= start)
+                    continue;
+
+                header.clear();
+                header.writeInt(cycle);
+                header.writeLong(firstSequence);
+                header.writeLong(end - start);
+                writeFully(out, header, CHUNK_HEADER_SIZE, pauser);
+
+                try (FileChannel fc = FileChannel.open(store.file().toPath(), StandardOpenOption.READ)) {
+                    for (long pos = start; pos < end; ) {
+                        long written = fc.transferTo(pos, end - pos, out);
+                        pos += written;
+                        wrote(written, pauser);
+                    }
+                }
+                total += end - start;
+            }
+        } finally {
+            tailer.release();
+            header.release();
+        }
+        return total;
+    }
+
+    /**
+     * @return the end of the excerpts from start up to and including the one at lastPosition,
+     * stopping early at one which is not complete, as an appender may still be writing it.
+     */
+    private static long endOfComplete(@NotNull Bytes<?> bytes, long start, long lastPosition) {
+        long end = start;
+        while (end <= lastPosition) {
+            int header = bytes.readVolatileInt(end);
+            if (header == 0 || Wires.isEndOfFile(header) || !Wires.isReady(header))
+                break;
+            end += 4 + Wires.lengthOf(header);
+        }
+        return end;
+    }
+
+    static long importFrom(@NotNull SingleChronicleQueue queue, @NotNull ReadableByteChannel in) throws IOException {
+        InternalAppender appender = (InternalAppender) queue.acquireAppender();
+        RollCycle rollCycle = queue.rollCycle();
+        Bytes<ByteBuffer> bytes = Bytes.elasticByteBuffer(BUFFER_SIZE);
+        BinaryMessageHistory history = BinaryMessageHistory.get();
+        long count = 0;
+        try {
+            while (fill(in, bytes, CHUNK_HEADER_SIZE, false)) {
+                int cycle = bytes.readInt();
+                long sequence = bytes.readLong();
+                long remaining = bytes.readLong();
+                while (remaining > 0) {
+                    fill(in, bytes, 4, true);
+                    int excerptHeader = bytes.readInt(bytes.readPosition());
+                    int length = 4 + Wires.lengthOf(excerptHeader);
+                    if (length > bytes.realCapacity())
+                        bytes = grow(bytes, length);
+                    fill(in, bytes, length, true);
+
+                    long start = bytes.readPosition();
+                    if (Wires.isReadyData(excerptHeader)) {
+                        long limit = bytes.readLimit();
+                        bytes.readPositionRemaining(start + 4, length - 4);
+                        long index = rollCycle.toIndex(cycle, sequence++);
+                        if (queue.binaryHistory && !history.readFrom(bytes))
+                            throw new StreamCorruptedException("No history record at the start of excerpt " + Long.toHexString(index));
+                        appender.writeBytes(index, bytes);
+                        bytes.readLimit(limit);
+                        count++;
+                    }
+                    // meta data, e.g. index pages, is rebuilt by the appender.
+                    bytes.readPosition(start + length);
+                    remaining -= length;
+                }
+            }
+        } finally {
+            bytes.release();
+            // so the last record imported isn't written with what this thread appends next.
+            if (queue.binaryHistory)
+                history.reset();
+        }
+        return count;
+    }
+
+    static void exportCycle(@NotNull SingleChronicleQueue queue, int cycle, @NotNull Path target) throws IOException {
+        if (cycle >= queue.lastCycle())
+            throw new IllegalStateException("Only closed cycles can be copied, cycle=" + cycle +
+                    ", lastCycle=" + queue.lastCycle());
+        WireStore store = queue.storeForCycle(cycle, queue.epoch(), false);
+        if (store == null)
+            throw new IllegalArgumentException("No cycle " + cycle + " in " + queue.file());
+        try {
+            copy(store.file().toPath(), target);
+        } finally {
+            queue.release(store);
+        }
+    }
+
+    static void importCycle(@NotNull SingleChronicleQueue queue, @NotNull Path cycleFile) throws IOException {
+        File target = new File(queue.file(), cycleFile.getFileName().toString());
+        if (target.exists())
+            throw new IllegalStateException("Cycle file " + target + " already exists");
+        File tmp = new File(target.getPath() + ".tmp");
+        copy(cycleFile, tmp.toPath());
+        // only becomes visible as a cycle once complete.
+        if (!tmp.renameTo(target))
+            throw new IOException("Unable to rename " + tmp + " to " + target);
+        // rescan the directory on the next call to firstCycle()
+        queue.firstAndLastCycleTime = 0;
+    }
+
+    private static void copy(@NotNull Path from, @NotNull Path to) throws IOException {
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(to, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            for (long pos = 0; pos < size; )
+                pos += in.transferTo(pos, size - pos, out);
+        }
+    }
+
+    private static void writeFully(@NotNull WritableByteChannel out, @NotNull Bytes<ByteBuffer> bytes, int length,
+                                   @NotNull Pauser pauser) throws IOException {
+        ByteBuffer bb = bytes.underlyingObject();
+        bb.limit(length);
+        bb.position(0);
+        while (bb.hasRemaining())
+            wrote(out.write(bb), pauser);
+    }
+
+    /**
+     * Backs off if nothing could be written, as a non blocking channel is full.
+     */
+    private static void wrote(long written, @NotNull Pauser pauser) {
+        if (written > 0)
+            pauser.reset();
+        else
+            pauser.pause();
+    }
+
+    /**
+     * Reads until at least {@code length} bytes can be read.
+     *
+     * @return false if the channel ended cleanly before any bytes were read.
+     */
+    private static boolean fill(@NotNull ReadableByteChannel in, @NotNull Bytes<ByteBuffer> bytes, int length,
+                                boolean required) throws IOException {
+        if (bytes.readRemaining() >= length)
+            return true;
+        long remaining = bytes.readRemaining();
+        if (bytes.readPosition() > 0) {
+            if (remaining > 0)
+                bytes.write(0, bytes, bytes.readPosition(), remaining);
+            bytes.readPositionRemaining(0, remaining);
+        }
+        ByteBuffer bb = bytes.underlyingObject();
+        bb.limit(bb.capacity());
+        bb.position((int) remaining);
+        while (bb.position() < length) {
+            if (in.read(bb) < 0) {
+                if (bb.position() == 0 && !required)
+                    return false;
+                throw new EOFException("Export ended after " + bb.position() + " of " + length + " bytes");
+            }
+        }
+        bytes.readPositionRemaining(0, bb.position());
+        return true;
+    }
+
+    @NotNull
+    private static Bytes<ByteBuffer> grow(@NotNull Bytes<ByteBuffer> bytes, int length) {
+        Bytes<ByteBuffer> bigger = Bytes.elasticByteBuffer(Math.max(length, (int) bytes.realCapacity() * 2));
+        bigger.write(bytes);
+        bytes.release();
+        return bigger;
+    }
+}
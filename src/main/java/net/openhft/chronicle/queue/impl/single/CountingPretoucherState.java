@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.MappedBytes;
+import net.openhft.chronicle.queue.impl.QueueMetrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Counts the pages pretouched, and how many of them were touched ahead of the appender.
+ */
+class CountingPretoucherState extends PretoucherState {
+    @NotNull
+    private final QueueMetrics metrics;
+
+    CountingPretoucherState(LongSupplier posSupplier, @NotNull QueueMetrics metrics) {
+        super(posSupplier);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected boolean touchPage(@NotNull MappedBytes bytes, long offset) {
+        boolean touched = super.touchPage(bytes, offset);
+        if (touched)
+            metrics.increment(QueueMetrics.Counter.PRETOUCH_HITS);
+        return touched;
+    }
+
+    @Override
+    protected void onTouched(int count) {
+        metrics.add(QueueMetrics.Counter.PRETOUCHED_PAGES, count);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable direct {@link ByteBuffer} an excerpt is copied to, so it can be passed to NIO channels
+ * in one piece. {@link #forRead(Bytes)} copies the readable bytes of e.g. a tailer's {@code
+ * DocumentContext}.
+ * <p>
+ * The buffer is only valid until the next call on this object, and grows to the largest excerpt
+ * copied. It is not thread safe.
+ */
+public final class DirectBufferCopy {
+    @Nullable
+    private Bytes<ByteBuffer> buffer;
+
+    /**
+     * @return a buffer holding a copy of the bytes from the read position to the read limit, which
+     * are left unread.
+     */
+    @NotNull
+    public ByteBuffer forRead(@NotNull Bytes<?> bytes) {
+        int length = length(bytes.readRemaining());
+        Bytes<ByteBuffer> buffer = buffer(length);
+        buffer.write(bytes, bytes.readPosition(), length);
+        return byteBuffer(buffer, length);
+    }
+
+    public void release() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+
+    private static int length(long length) {
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Excerpt of " + length + " bytes is too large to copy");
+        return (int) length;
+    }
+
+    @NotNull
+    private Bytes<ByteBuffer> buffer(int length) {
+        Bytes<ByteBuffer> buffer = this.buffer;
+        if (buffer == null || buffer.realCapacity() < length) {
+            if (buffer != null)
+                buffer.release();
+            this.buffer = buffer = Bytes.elasticByteBuffer(Math.max(length, 4 << 10));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    @NotNull
+    private static ByteBuffer byteBuffer(@NotNull Bytes<ByteBuffer> buffer, int length) {
+        ByteBuffer bb = buffer.underlyingObject();
+        bb.limit(length);
+        bb.position(0);
+        return bb;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.MappedBytes;
+import net.openhft.chronicle.core.annotation.UsedViaReflection;
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.queue.RollCycle;
+import net.openhft.chronicle.queue.impl.ExcerptContext;
+import net.openhft.chronicle.wire.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+
+/**
+ * A store whose excerpts all take the same number of bytes, so the position of an excerpt is
+ * worked out from its sequence number rather than looked up in an index, and no index is written.
+ * <p>
+ * Each excerpt keeps its 4 byte header, which says when it is complete, so the store is read the
+ * same way as any other, and the excerpts are followed by the end of file marker when it rolls.
+ * Excerpts shorter than the record size are padded with zeros.
+ */
+public class FixedRecordStore extends SingleChronicleQueueStore {
+    private final int recordSize;
+    // the position of the first excerpt, after the header of the store.
+    private long start = 0;
+
+    /**
+     * used by {@link net.openhft.chronicle.wire.Demarshallable}
+     *
+     * @param wire a wire
+     */
+    @UsedViaReflection
+    private FixedRecordStore(@NotNull WireIn wire) {
+        super(wire);
+        this.recordSize = wire.read(Field.recordSize).int32();
+    }
+
+    /**
+     * @param recordSize the length of each excerpt, not including its header.
+     */
+    public FixedRecordStore(@Nullable RollCycle rollCycle,
+                            @NotNull final WireType wireType,
+                            @NotNull MappedBytes mappedBytes,
+                            long epoch,
+                            int indexCount,
+                            int indexSpacing,
+                            StoreRecovery recovery,
+                            int deltaCheckpointInterval,
+                            int recordSize) {
+        super(rollCycle, wireType, mappedBytes, epoch, indexCount, indexSpacing, recovery, deltaCheckpointInterval);
+        if (recordSize <= 0)
+            throw new IllegalArgumentException("recordSize=" + recordSize);
+        this.recordSize = recordSize;
+    }
+
+    public int recordSize() {
+        return recordSize;
+    }
+
+    private long slotSize() {
+        return 4L + recordSize;
+    }
+
+    private long start(@NotNull Bytes<?> bytes) {
+        if (start == 0)
+            // the header is complete before the store is used.
+            start = 4 + Wires.lengthOf(bytes.readVolatileInt(0));
+        return start;
+    }
+
+    /**
+     * @return the position after the last complete excerpt.
+     */
+    private long end(@NotNull Bytes<?> bytes) {
+        long start = start(bytes);
+        long writePosition = writePosition();
+        long end = writePosition < start ? start : writePosition + slotSize();
+        // appenders update the write position after the header, so it can be behind.
+        while (Wires.isReadyData(bytes.readVolatileInt(end)))
+            end += slotSize();
+        return end;
+    }
+
+    @Nullable
+    @Override
+    public ScanResult moveToIndexForRead(@NotNull ExcerptContext ec, long sequenceNumber) {
+        Bytes<?> bytes = ec.wire().bytes();
+        long position = start(bytes) + sequenceNumber * slotSize();
+        long end = end(bytes);
+        if (sequenceNumber < 0 || position > end)
+            return ScanResult.NOT_REACHED;
+        bytes.readPositionUnlimited(position);
+        return position < end ? ScanResult.FOUND : ScanResult.NOT_FOUND;
+    }
+
+    @NotNull
+    @Override
+    ScanResult moveToIndexFrom(@NotNull ExcerptContext ec, long fromSequenceNumber, long fromPosition, long sequenceNumber) {
+        return moveToIndexForRead(ec, sequenceNumber);
+    }
+
+    @Override
+    public long sequenceForPosition(@NotNull ExcerptContext ec, long position, boolean inclusive) {
+        if (position == Long.MAX_VALUE)
+            return lastSequenceNumber(ec);
+        long start = start(ec.wireForIndex().bytes());
+        if (position < start)
+            return -1;
+        long sequenceNumber = (position - start) / slotSize();
+        return inclusive ? sequenceNumber : sequenceNumber - 1;
+    }
+
+    @Override
+    public long lastSequenceNumber(@NotNull ExcerptContext ec) {
+        Bytes<?> bytes = ec.wireForIndex().bytes();
+        return (end(bytes) - start(bytes)) / slotSize() - 1;
+    }
+
+    @Override
+    long lastSequenceNumberFrom(@NotNull ExcerptContext ec, long fromSequenceNumber, long fromPosition) {
+        return lastSequenceNumber(ec);
+    }
+
+    @Override
+    long sequenceForPositionFrom(@NotNull ExcerptContext ec, long position, long fromSequenceNumber, long fromPosition) {
+        return sequenceForPosition(ec, position, true);
+    }
+
+    @Override
+    public boolean indexable(long index) {
+        return false;
+    }
+
+    @Override
+    public void setPositionForSequenceNumber(@NotNull ExcerptContext ec, long sequenceNumber, long position) {
+        // the position is known from the sequence number.
+    }
+
+    @Override
+    public long writeHeader(@NotNull Wire wire, int length, int safeLength, long timeoutMS) throws EOFException, UnrecoverableTimeoutException {
+        if (length != recordSize)
+            throw new IllegalArgumentException("Excerpts of this store are " + recordSize + " bytes, not " + length);
+        return super.writeHeader(wire, length, safeLength, timeoutMS);
+    }
+
+    @Override
+    void writeFields(@NotNull WireOut wire) {
+        super.writeFields(wire);
+        wire.write(Field.recordSize).int32(recordSize);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "FixedRecordStore{" +
+                "recordSize=" + recordSize +
+                ", " + super.toString() +
+                '}';
+    }
+
+    enum Field implements WireKey {
+        recordSize;
+
+        @Nullable
+        @Override
+        public Object defaultValue() {
+            throw new IORuntimeException("field " + name() + " required");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.MappedFile;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.Closeable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A small file beside the cycle files which records the index and position of the last excerpt
+ * written, so a tailer can find the end of the queue without looking it up in the index.
+ * <p>
+ * The file holds {@code [index: 8 bytes][position: 8 bytes][check: 8 bytes]}. Appenders write it
+ * once an excerpt is complete, claiming the index with a compare and swap so it only moves forward,
+ * and the check, a hash of the index and position, tells a reader whether the position it read goes
+ * with the index. Appenders racing to write it never wait for each other; if they leave a position
+ * which doesn't match, it is ignored until the next excerpt is recorded. As other excerpts may have
+ * been written since, it is where to start reading to the end, rather than the end itself. Every
+ * appender of the queue must record it, or it will be stale.
+ */
+class LastWritten implements Closeable {
+    static final String FILE_NAME = "last-written.cq4t";
+    private static final int INDEX = 0, POSITION = 8, CHECK = 16;
+
+    @NotNull
+    private final MappedFile mappedFile;
+    @NotNull
+    private final BytesStore store;
+    private volatile boolean closed = false;
+
+    private LastWritten(@NotNull MappedFile mappedFile) throws IOException {
+        this.mappedFile = mappedFile;
+        this.store = mappedFile.acquireByteStore(0);
+    }
+
+    /**
+     * @return the last written of the queue in dir, or null if there is none and create is false.
+     */
+    @Nullable
+    static LastWritten open(@NotNull File dir, boolean create) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!create && !file.exists())
+            return null;
+        return new LastWritten(MappedFile.mappedFile(file, OS.pageSize()));
+    }
+
+    /**
+     * Records index, unless a later excerpt has been recorded already. Called once the excerpt is
+     * complete, so appenders may get here out of order.
+     */
+    void written(long index, long position) {
+        long last;
+        do {
+            last = store.readVolatileLong(INDEX);
+            if (last >= index)
+                return;
+        } while (!store.compareAndSwapLong(INDEX, last, index));
+        store.writeOrderedLong(POSITION, position);
+        store.writeOrderedLong(CHECK, check(index, position));
+    }
+
+    /**
+     * @return the index of the last excerpt written, if {@link #position(long)} finds it.
+     */
+    long index() {
+        return store.readVolatileLong(INDEX);
+    }
+
+    /**
+     * @return the position of the excerpt at index, or -1 if index is no longer the last written,
+     * its position hasn't been written or was overwritten by an appender recording an earlier
+     * excerpt, or nothing has been written.
+     */
+    long position(long index) {
+        // read in the reverse of the order written.
+        long check = store.readVolatileLong(CHECK);
+        long position = store.readVolatileLong(POSITION);
+        // the header of a store is at 0, so no excerpt is.
+        return position > 0 && check == check(index, position) && store.readVolatileLong(INDEX) == index
+                ? position : -1;
+    }
+
+    private static long check(long index, long position) {
+        return index * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(position, 32);
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        store.release();
+        mappedFile.release();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the memory the appenders and tailers of every queue in this process keep mapped, so one
+ * process can have many queues open without running out of address space.
+ * <p>
+ * Each appender or tailer with a cycle open counts as mapping a block and its overlap. When a
+ * cycle is mapped over the budget, the least recently used appenders and tailers are unmapped,
+ * and map their cycle again when next used, from where they were. As appenders and tailers are
+ * not thread safe, only those last used by the thread mapping are unmapped; the others are unmapped
+ * when their own thread next maps over the budget. The budget is set with {@code
+ * -Dcq.mappedMemoryBudget=bytes} or {@link #maxBytes(long)}, and has no limit by default.
+ */
+public final class MappedMemoryBudget {
+    public static final MappedMemoryBudget INSTANCE =
+            new MappedMemoryBudget(Long.getLong("cq.mappedMemoryBudget", Long.MAX_VALUE));
+
+    private final List<Mapping> mappings = new ArrayList<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile long maxBytes;
+    private long mappedBytes = 0;
+    // a rough order of use, not synchronized as it is updated on every access.
+    private long clock = 0;
+
+    MappedMemoryBudget(long maxBytes) {
+        maxBytes(maxBytes);
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param maxBytes the most bytes to keep mapped, or Long.MAX_VALUE for no limit. Only cycles
+     *                 mapped after this is set are counted.
+     */
+    public void maxBytes(long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes=" + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the bytes counted as mapped.
+     */
+    public synchronized long mappedBytes() {
+        return mappedBytes;
+    }
+
+    /**
+     * @return the number of reads and writes which found their cycle mapped.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of cycles mapped, including those mapped again after being unmapped.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of cycles unmapped to stay within the budget.
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private boolean limited() {
+        return maxBytes != Long.MAX_VALUE;
+    }
+
+    /**
+     * Counts the cycle an appender or tailer has mapped, unmapping others of this thread to stay
+     * within the budget.
+     */
+    void mapped(@NotNull Mapping mapping, long size) {
+        if (!limited() && !mapping.counted)
+            return;
+        misses.increment();
+        synchronized (this) {
+            if (!mapping.counted) {
+                mapping.counted = true;
+                mappings.add(mapping);
+            }
+            mappedBytes += size - mapping.size;
+            mapping.size = size;
+            mapping.owner = Thread.currentThread();
+            mapping.lastUsed = ++clock;
+            while (mappedBytes > maxBytes) {
+                Mapping lru = leastRecentlyUsed(mapping);
+                if (lru == null)
+                    break;
+                remove(lru);
+                evictions.increment();
+            }
+        }
+    }
+
+    void used(@NotNull Mapping mapping) {
+        if (!mapping.counted)
+            return;
+        hits.increment();
+        mapping.owner = Thread.currentThread();
+        mapping.lastUsed = ++clock;
+    }
+
+    synchronized void unmapped(@NotNull Mapping mapping) {
+        if (mapping.counted && mappings.remove(mapping)) {
+            mapping.counted = false;
+            mappedBytes -= mapping.size;
+            mapping.size = 0;
+        }
+    }
+
+    @Nullable
+    private Mapping leastRecentlyUsed(@NotNull Mapping except) {
+        Thread thread = Thread.currentThread();
+        Mapping lru = null;
+        for (Mapping m : mappings) {
+            if (m == except || m.owner != thread || m.busy())
+                continue;
+            if (lru == null || m.lastUsed < lru.lastUsed)
+                lru = m;
+        }
+        return lru;
+    }
+
+    private void remove(@NotNull Mapping mapping) {
+        mappings.remove(mapping);
+        mapping.counted = false;
+        mappedBytes -= mapping.size;
+        mapping.size = 0;
+        mapping.unmap();
+    }
+
+    /**
+     * The cycle mapped by an appender or tailer.
+     */
+    static abstract class Mapping {
+        boolean counted;
+        long size;
+        long lastUsed;
+        @Nullable
+        volatile Thread owner;
+
+        /**
+         * @return whether an excerpt is being read or written, so the cycle can't be unmapped.
+         */
+        abstract boolean busy();
+
+        /**
+         * Releases the cycle, to be mapped again on the next read or write.
+         */
+        abstract void unmap();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.threads.EventHandler;
+import net.openhft.chronicle.core.threads.HandlerPriority;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+
+/**
+ * Checks the free disk space of a queue, and writes out the file for the next cycle ahead of time
+ * from its event loop. Writing zeros, rather than only setting the length, makes the file system
+ * allocate the blocks, so the appender neither stalls extending the file nor finds the disk full
+ * part way through a cycle. The file is written a slice per action(), so the other handlers of the
+ * event loop aren't held up for the whole file.
+ * <p>
+ * The file is written as {@code <cycle file>.preallocated}, which isn't seen as a cycle, and linked
+ * to the name of the cycle file by the first appender to roll to that cycle.
+ */
+class Preallocator implements EventHandler {
+    static final String SUFFIX = ".preallocated";
+    static final int SLICE_SIZE = 1 << 20;
+    private static final long CHECK_INTERVAL_MS = Long.getLong("cq.preallocateCheckMS", 1000);
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    private final ByteBuffer zeros = ByteBuffer.allocateDirect(SLICE_SIZE);
+    private long nextCheck = 0;
+    // the file being written, if any, and how much of it has been.
+    @Nullable
+    private RandomAccessFile raf;
+    private File tmp;
+    private int cycle;
+    private long written;
+
+    Preallocator(@NotNull SingleChronicleQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Makes the preallocated file for path, if there is one, the cycle file at path.
+     */
+    static void claim(@NotNull File path) {
+        File preallocated = new File(path.getPath() + SUFFIX);
+        if (!preallocated.exists())
+            return;
+        try {
+            // a link fails, rather than replacing it, if another process created the cycle first.
+            Files.createLink(path.toPath(), preallocated.toPath());
+        } catch (FileAlreadyExistsException ignored) {
+        } catch (IOException | UnsupportedOperationException e) {
+            Jvm.debug().on(Preallocator.class, "Unable to use " + preallocated + ", " + e);
+        }
+        if (path.exists() && !preallocated.delete())
+            Jvm.debug().on(Preallocator.class, "Unable to delete " + preallocated);
+    }
+
+    @Override
+    public boolean action() throws InvalidEventHandlerException {
+        if (queue.isClosed()) {
+            abandon();
+            throw new InvalidEventHandlerException();
+        }
+
+        try {
+            // a file part way through is carried on without waiting for the next check.
+            if (raf != null)
+                return preallocate(cycle);
+
+            long now = System.currentTimeMillis();
+            if (now < nextCheck)
+                return false;
+            nextCheck = now + CHECK_INTERVAL_MS;
+            if (!queue.checkDiskSpace() || queue.preallocateBytes() <= 0)
+                return false;
+            // the next sub cycle, if the queue also rolls on size.
+            return preallocate(queue.appendCycle(Integer.MIN_VALUE) + 1);
+        } catch (Exception e) {
+            Jvm.warn().on(getClass(), "Unable to preallocate the next cycle of " + queue.file(), e);
+            abandon();
+            return false;
+        }
+    }
+
+    /**
+     * Writes the next slice of the file for cycle, starting it if need be, and gives it the name
+     * an appender looks for once the last slice has been written.
+     *
+     * @return whether a slice was written.
+     */
+    boolean preallocate(int cycle) throws IOException {
+        if (raf != null && this.cycle != cycle)
+            abandon();
+        File path = queue.fileForCycle(cycle);
+        File preallocated = new File(path.getPath() + SUFFIX);
+        if (path.exists() || preallocated.exists()) {
+            // an appender got there first.
+            abandon();
+            return false;
+        }
+
+        long size = queue.preallocateBytes();
+        if (raf == null) {
+            // written under another name so an appender never claims part of a file.
+            tmp = new File(path.getPath() + SUFFIX + ".tmp");
+            raf = new RandomAccessFile(tmp, "rw");
+            this.cycle = cycle;
+            written = 0;
+        }
+        FileChannel channel = raf.getChannel();
+        zeros.clear();
+        zeros.limit((int) Math.min(SLICE_SIZE, size - written));
+        while (zeros.hasRemaining())
+            channel.write(zeros, written + zeros.position());
+        written += zeros.limit();
+        if (written < size)
+            return true;
+
+        channel.force(false);
+        raf.close();
+        raf = null;
+        if (!tmp.renameTo(preallocated))
+            tmp.delete();
+        return true;
+    }
+
+    /**
+     * Deletes the file being written, if any.
+     */
+    private void abandon() {
+        if (raf == null)
+            return;
+        try {
+            raf.close();
+        } catch (IOException e) {
+            Jvm.debug().on(getClass(), "Unable to close " + tmp + ", " + e);
+        }
+        raf = null;
+        tmp.delete();
+    }
+
+    @NotNull
+    @Override
+    public HandlerPriority priority() {
+        return HandlerPriority.MONITOR;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.MappedBytes;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.queue.impl.WireStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Touches the pages of a cycle ahead of a streaming tailer, so they are faulted in as a sequential
+ * run rather than one at a time as the tailer gets to them.
+ * <p>
+ * This is done on the tailer's own thread, a burst of up to cq.readAheadBytes each time the tailer
+ * gets half way through the pages touched last time, so that read pays for the faults of the
+ * following ones. The pages are touched through a second mapping of the cycle file. Nothing is
+ * dropped behind the tailer; the pages it has read stay in the page cache until the OS reclaims
+ * them.
+ */
+class ReadAhead {
+    private static final long AHEAD = Long.getLong("cq.readAheadBytes", 1 << 20);
+
+    @NotNull
+    private final SingleChronicleQueue queue;
+    @Nullable
+    private MappedBytes bytes;
+    @Nullable
+    private File file;
+    // the pages before this have been read.
+    private long readTo;
+
+    ReadAhead(@NotNull SingleChronicleQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Reads the pages of store ahead of position, when the tailer is half way through those read
+     * last time.
+     */
+    void readAhead(@NotNull WireStore store, long position) {
+        if (bytes != null && position + AHEAD / 2 < readTo && store.file().equals(file))
+            return;
+        try {
+            File file = store.file();
+            if (bytes == null || !file.equals(this.file)) {
+                release();
+                bytes = queue.mappedBytes(file);
+                bytes.readLimit(bytes.capacity());
+                this.file = file;
+                readTo = position - position % OS.pageSize();
+            }
+            if (readTo < position)
+                readTo = position - position % OS.pageSize();
+            long end = Math.min(position + AHEAD, store.writePosition());
+            for (; readTo < end; readTo += OS.pageSize())
+                bytes.readVolatileByte(readTo);
+        } catch (IOException e) {
+            Jvm.debug().on(getClass(), "Unable to read ahead in " + store.file() + ", " + e);
+            release();
+        }
+    }
+
+    void release() {
+        if (bytes != null) {
+            bytes.release();
+            bytes = null;
+        }
+        file = null;
+    }
+}
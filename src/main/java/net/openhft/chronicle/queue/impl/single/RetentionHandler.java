@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.threads.EventHandler;
+import net.openhft.chronicle.core.threads.HandlerPriority;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Applies the retention policy of a queue from its event loop, so old cycles are deleted off the
+ * writing thread.
+ */
+class RetentionHandler implements EventHandler {
+    private static final long CHECK_INTERVAL_MS = Long.getLong("cq.retentionCheckMS", 1000);
+    @NotNull
+    private final SingleChronicleQueue queue;
+    private long nextCheck = 0;
+
+    RetentionHandler(@NotNull SingleChronicleQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public boolean action() throws InvalidEventHandlerException {
+        if (queue.isClosed())
+            throw new InvalidEventHandlerException();
+
+        // the same clock as the cutoffs, so a queue with its own time provider is checked as it moves.
+        long now = queue.time().currentTimeMillis();
+        if (now < nextCheck && now >= nextCheck - CHECK_INTERVAL_MS)
+            return false;
+        nextCheck = now + CHECK_INTERVAL_MS;
+        try {
+            return queue.applyRetention() > 0;
+        } catch (Exception e) {
+            Jvm.warn().on(getClass(), "Unable to apply the retention policy to " + queue.file(), e);
+            return false;
+        }
+    }
+
+    @NotNull
+    @Override
+    public HandlerPriority priority() {
+        return HandlerPriority.MONITOR;
+    }
+}
@@ -28,6 +28,7 @@ import net.openhft.chronicle.core.io.Closeable;
 import net.openhft.chronicle.core.values.LongArrayValues;
 import net.openhft.chronicle.core.values.LongValue;
 import net.openhft.chronicle.queue.impl.ExcerptContext;
+import net.openhft.chronicle.queue.impl.QueueMetrics;
 import net.openhft.chronicle.threads.Pauser;
 import net.openhft.chronicle.wire.*;
 import org.jetbrains.annotations.NotNull;
@@ -171,10 +172,17 @@ class SCQIndexing implements Demarshallable, WriteMarshallable, Closeable {
         try {
             return acquireIndex2Index0(recovery, ec, timeoutMS);
         } catch (TimeoutException fallback) {
+            recovered(ec);
             return recovery.recoverIndex2Index(this.index2Index, () -> acquireIndex2Index0(recovery, ec, timeoutMS), timeoutMS);
         }
     }
 
+    static void recovered(@NotNull ExcerptContext ec) {
+        QueueMetrics metrics = ec.metrics();
+        if (metrics != null)
+            metrics.increment(QueueMetrics.Counter.RECOVERIES);
+    }
+
     long acquireIndex2Index0(@NotNull StoreRecovery recovery, @NotNull ExcerptContext ec, long timeoutMS)
             throws EOFException, TimeoutException, UnrecoverableTimeoutException, StreamCorruptedException {
         long start = System.currentTimeMillis();
@@ -334,7 +342,7 @@ class SCQIndexing implements Demarshallable, WriteMarshallable, Closeable {
             Wire wire = ec.wire();
             wire.bytes().readPositionUnlimited(0);
             if (wire.readDataHeader())
-                return linearScan(wire, index, 0, wire.bytes().readPosition());
+                return linearScan(ec, wire, index, 0, wire.bytes().readPosition());
         } catch (EOFException fallback) {
         }
         return ScanResult.NOT_FOUND;
@@ -381,13 +389,13 @@ class SCQIndexing implements Demarshallable, WriteMarshallable, Closeable {
                     ec.wire().bytes().readPositionUnlimited(fromAddress);
                     return ScanResult.FOUND;
                 } else {
-                    return linearScan(ec.wire(), index, startIndex, fromAddress);
+                    return linearScan(ec, ec.wire(), index, startIndex, fromAddress);
                 }
 
             } while (secondaryOffset >= 0);
             return null; // no index,
         } catch (IllegalStateException e) {
-            return linearScan(ec.wire(), index, -1, 0);
+            return linearScan(ec, ec.wire(), index, -1, 0);
         }
     }
 
@@ -405,7 +413,8 @@ class SCQIndexing implements Demarshallable, WriteMarshallable, Closeable {
      */
 
     @NotNull
-    private ScanResult linearScan(@NotNull final Wire wire,
+    ScanResult linearScan(@NotNull final ExcerptContext ec,
+                                  @NotNull final Wire wire,
                                   final long toIndex,
                                   final long fromKnownIndex,
                                   final long knownAddress) {
@@ -415,23 +424,30 @@ class SCQIndexing implements Demarshallable, WriteMarshallable, Closeable {
         long end = writePosition.getVolatileValue();
         bytes.readPositionUnlimited(knownAddress);
 
-        for (long i = fromKnownIndex; ; i++) {
-            try {
-                if (wire.readDataHeader()) {
-                    if (i == toIndex)
-                        return ScanResult.FOUND;
-                    if (bytes.readPosition() > end)
-                        return ScanResult.NOT_REACHED;
-                    int header = bytes.readInt();
-                    if (Wires.isNotComplete(header)) // or isEndOfFile
-                        return ScanResult.NOT_REACHED;
-                    bytes.readSkip(Wires.lengthOf(header));
-                    continue;
+        long i = fromKnownIndex;
+        try {
+            for (; ; i++) {
+                try {
+                    if (wire.readDataHeader()) {
+                        if (i == toIndex)
+                            return ScanResult.FOUND;
+                        if (bytes.readPosition() > end)
+                            return ScanResult.NOT_REACHED;
+                        int header = bytes.readInt();
+                        if (Wires.isNotComplete(header)) // or isEndOfFile
+                            return ScanResult.NOT_REACHED;
+                        bytes.readSkip(Wires.lengthOf(header));
+                        continue;
+                    }
+                } catch (EOFException fallback) {
+                    // reached the end of the file.
                 }
-            } catch (EOFException fallback) {
-                // reached the end of the file.
+                return i == toIndex ? ScanResult.NOT_FOUND : ScanResult.NOT_REACHED;
             }
-            return i == toIndex ? ScanResult.NOT_FOUND : ScanResult.NOT_REACHED;
+        } finally {
+            QueueMetrics metrics = ec.metrics();
+            if (metrics != null)
+                metrics.add(QueueMetrics.Counter.LINEAR_SCANS, QueueMetrics.Counter.LINEAR_SCAN_LENGTH, i - fromKnownIndex);
         }
     }
 
@@ -590,6 +606,7 @@ class SCQIndexing implements Demarshallable, WriteMarshallable, Closeable {
         } catch (TimeoutException fallback) {
             ec.wire().pauser().reset();
             ec.wireForIndex().pauser().reset();
+            recovered(ec);
             return recovery.recoverSecondaryAddress(index2indexArr, index2, () -> getSecondaryAddress1(recovery, ec, timeoutMS, index2indexArr, index2), timeoutMS);
         }
     }
@@ -24,11 +24,15 @@ import net.openhft.chronicle.core.threads.EventLoop;
 import net.openhft.chronicle.core.threads.ThreadLocalHelper;
 import net.openhft.chronicle.core.time.TimeProvider;
 import net.openhft.chronicle.core.util.StringUtils;
+import net.openhft.chronicle.queue.BackPressurePolicy;
 import net.openhft.chronicle.queue.ExcerptAppender;
 import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.InsufficientDiskSpaceException;
+import net.openhft.chronicle.queue.RetentionPolicy;
 import net.openhft.chronicle.queue.RollCycle;
 import net.openhft.chronicle.queue.TailerDirection;
 import net.openhft.chronicle.queue.impl.*;
+import net.openhft.chronicle.threads.EventGroup;
 import net.openhft.chronicle.threads.Pauser;
 import net.openhft.chronicle.wire.*;
 import org.jetbrains.annotations.NotNull;
@@ -39,6 +43,8 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.ParseException;
@@ -110,7 +116,35 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
     private final BiFunction<RollingChronicleQueue, Wire, WireStore> storeFactory;
     private final StoreRecoveryFactory recoverySupplier;
     private final Map<Object, Consumer> closers = new HashMap<>();
+    private final Map<Integer, Integer> pinnedCycles = new HashMap<>();
     private final boolean readOnly;
+    @NotNull
+    private final RetentionPolicy retentionPolicy;
+    @Nullable
+    private EventLoop backgroundEventLoop;
+    final boolean binaryHistory;
+    @Nullable
+    private final QueueMetrics metrics;
+    @Nullable
+    private SourceCheckpoints sourceCheckpoints;
+    @Nullable
+    private TailerPositions tailerPositions;
+    private final int namedTailerBatch;
+    @NotNull
+    private final BackPressurePolicy backPressurePolicy;
+    private final long preallocateBytes;
+    private final long diskSpaceReserve;
+    private volatile boolean lowOnDiskSpace = false;
+    @Nullable
+    private final BackgroundIndexer backgroundIndexer;
+    private final boolean trackLastWritten;
+    private final int recordSize;
+    @Nullable
+    private final File archivePath;
+    private final int hotCycles;
+    private final long hotBytes;
+    @Nullable
+    private LastWritten lastWritten;
     long firstAndLastCycleTime = 0;
     int firstAndLastRetry = 0;
     int firstCycle = Integer.MAX_VALUE, lastCycle = Integer.MIN_VALUE;
@@ -151,6 +185,36 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
         sourceId = builder.sourceId();
         recoverySupplier = builder.recoverySupplier();
         readOnly = builder.readOnly();
+        retentionPolicy = builder.retentionPolicy();
+        binaryHistory = builder.binaryHistory();
+        metrics = builder.metrics() ? openMetrics() : null;
+        namedTailerBatch = builder.namedTailerBatch();
+        backPressurePolicy = builder.backPressurePolicy();
+        preallocateBytes = builder.preallocateBytes();
+        diskSpaceReserve = builder.diskSpaceReserve();
+        trackLastWritten = builder.trackLastWritten() && !readOnly;
+        recordSize = builder.recordSize();
+        archivePath = builder.archivePath();
+        hotCycles = builder.hotCycles();
+        hotBytes = builder.hotBytes();
+
+        boolean preallocate = preallocateBytes > 0 || diskSpaceReserve > 0;
+        backgroundIndexer = builder.backgroundIndexing() && !readOnly ? new BackgroundIndexer(this) : null;
+        if ((!retentionPolicy.isNone() || preallocate || backgroundIndexer != null || archivePath != null) && !readOnly) {
+            EventLoop loop = eventLoop;
+            if (loop == null)
+                loop = backgroundEventLoop = new EventGroup(true);
+            if (!retentionPolicy.isNone())
+                loop.addHandler(new RetentionHandler(this));
+            if (preallocate)
+                loop.addHandler(new Preallocator(this));
+            if (backgroundIndexer != null)
+                loop.addHandler(backgroundIndexer);
+            if (archivePath != null)
+                loop.addHandler(new Archiver(this));
+            if (backgroundEventLoop != null)
+                backgroundEventLoop.start();
+        }
     }
 
     @Nullable
@@ -317,10 +381,41 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
         return new StoreTailer(this).toStart();
     }
 
+    /**
+     * Creates a tailer which carries on from the next index the last tailer with this name was
+     * going to read, or from the start if there wasn't one. Its position is recorded every {@link
+     * SingleChronicleQueueBuilder#namedTailerBatch(int)} excerpts read, and with {@link
+     * StoreTailer#persistPosition()}. Retention doesn't delete cycles a named tailer has yet to
+     * read.
+     *
+     * @param name up to 48 characters
+     */
+    @NotNull
+    @Override
+    public ExcerptTailer createTailer(@NotNull String name) {
+        TailerPositions positions = tailerPositions(!readOnly);
+        long slot = positions == null ? -1 : positions.slot(name, !readOnly);
+        if (slot < 0) {
+            if (readOnly)
+                return createTailer();
+            throw new IllegalStateException("Unable to record the position of the tailer " + name + " in " + path);
+        }
+        StoreTailer tailer = new StoreTailer(this);
+        tailer.named(positions, slot, readOnly ? 0 : namedTailerBatch);
+        if (metrics != null)
+            tailer.monitored(name);
+        return tailer;
+    }
+
     @Nullable
     @Override
     public final WireStore storeForCycle(int cycle, final long epoch, boolean createIfAbsent) {
-        return this.pool.acquire(cycle, epoch, createIfAbsent);
+        if (metrics == null)
+            return this.pool.acquire(cycle, epoch, createIfAbsent);
+        long start = System.nanoTime();
+        WireStore store = this.pool.acquire(cycle, epoch, createIfAbsent);
+        metrics.add(QueueMetrics.Counter.STORE_ACQUIRES, QueueMetrics.Counter.STORE_ACQUIRE_NANOS, System.nanoTime() - start);
+        return store;
     }
 
     @Override
@@ -437,6 +532,294 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
         return pool.listCyclesBetween(lowerCycle, upperCycle);
     }
 
+    /**
+     * @return the cycles which have a file in the queue directory, between lowerCycle and
+     * upperCycle inclusive. Unlike {@link #listCyclesBetween(int, int)} neither cycle has to exist.
+     */
+    @NotNull
+    NavigableSet<Integer> cyclesBetween(int lowerCycle, int upperCycle) {
+        NavigableSet<Integer> cycles = new TreeSet<>();
+        final String[] files = getList();
+        if (files == null)
+            return cycles;
+        for (String file : files) {
+            if (!file.endsWith(SUFFIX))
+                continue;
+            int cycle = dateCache.parseCount(file.substring(0, file.length() - SUFFIX.length()));
+            if (cycle >= lowerCycle && cycle <= upperCycle)
+                cycles.add(cycle);
+        }
+        return cycles;
+    }
+
+    /**
+     * Streams the excerpts from fromIndex to toIndex inclusive to a channel as raw ranges of the
+     * cycle files, using {@link java.nio.channels.FileChannel#transferTo(long, long,
+     * WritableByteChannel)}, so a socket is written with sendfile. The result can be loaded into
+     * another queue with {@link #importFrom(ReadableByteChannel)}.
+     *
+     * @return the number of bytes of excerpts written
+     */
+    public long exportTo(@NotNull WritableByteChannel out, long fromIndex, long toIndex) throws IOException {
+        return BulkTransfer.exportTo(this, out, fromIndex, toIndex);
+    }
+
+    /**
+     * Appends the excerpts written by {@link #exportTo(WritableByteChannel, long, long)} at their
+     * original indices, indexing them as they are written. Excerpts which already exist are
+     * skipped, and as indices can't have gaps, each cycle must start at sequence 0 or follow on from
+     * the excerpts already in this queue.
+     *
+     * @return the number of excerpts read
+     */
+    public long importFrom(@NotNull ReadableByteChannel in) throws IOException {
+        return BulkTransfer.importFrom(this, in);
+    }
+
+    /**
+     * Copies the file of a cycle which is no longer written to.
+     */
+    public void exportCycle(int cycle, @NotNull Path target) throws IOException {
+        BulkTransfer.exportCycle(this, cycle, target);
+    }
+
+    /**
+     * Adds a cycle file copied with {@link #exportCycle(int, Path)} to this queue. The queue must
+     * have the same roll cycle and wire type, and not have the cycle already.
+     */
+    public void importCycle(@NotNull Path cycleFile) throws IOException {
+        BulkTransfer.importCycle(this, cycleFile);
+    }
+
+    @NotNull
+    public RetentionPolicy retentionPolicy() {
+        return retentionPolicy;
+    }
+
+    public boolean binaryHistory() {
+        return binaryHistory;
+    }
+
+    @NotNull
+    public BackPressurePolicy backPressurePolicy() {
+        return backPressurePolicy;
+    }
+
+    public long preallocateBytes() {
+        return preallocateBytes;
+    }
+
+    /**
+     * @return the file of a cycle in the archive, if it has been moved there, otherwise in the
+     * queue directory, whether it exists or not.
+     */
+    @NotNull
+    File fileForCycle(int cycle) {
+        File file = dateCache.resourceFor(cycle).path;
+        if (archivePath == null || file.exists())
+            return file;
+        File archived = new File(archivePath, file.getName());
+        return archived.exists() ? archived : file;
+    }
+
+    /**
+     * @return the directory closed cycles are moved to, or null if they stay in {@link #file()}.
+     */
+    @Nullable
+    public File archivePath() {
+        return archivePath;
+    }
+
+    int hotCycles() {
+        return hotCycles;
+    }
+
+    long hotBytes() {
+        return hotBytes;
+    }
+
+    /**
+     * Looks at the usable space on the disk of this queue, when it has a disk space reserve.
+     *
+     * @return whether there is more than the reserve.
+     */
+    boolean checkDiskSpace() {
+        if (diskSpaceReserve <= 0)
+            return true;
+        try {
+            lowOnDiskSpace = Files.getFileStore(path.toPath()).getUsableSpace() < diskSpaceReserve;
+        } catch (IOException e) {
+            Jvm.debug().on(getClass(), "Unable to check the disk space of " + path + ", " + e);
+        }
+        return !lowOnDiskSpace;
+    }
+
+    /**
+     * @throws InsufficientDiskSpaceException if the last check found less usable space than the
+     *                                        reserve.
+     */
+    void assertDiskSpace() throws InsufficientDiskSpaceException {
+        if (lowOnDiskSpace && !checkDiskSpace())
+            throw new InsufficientDiskSpaceException("Less than " + diskSpaceReserve + " bytes usable for " + path);
+    }
+
+    /**
+     * Deletes the oldest cycles which are outside the retention policy, stopping at the first one
+     * still in use by a tailer or appender of this queue, so the cycles left are contiguous. The
+     * last cycle is never deleted. This is called periodically from the event loop when a policy is
+     * set.
+     *
+     * @return the number of cycles deleted
+     */
+    public synchronized int applyRetention() {
+        if (retentionPolicy.isNone() || readOnly || isClosed())
+            return 0;
+        NavigableSet<Integer> cycles = cyclesBetween(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        if (cycles.size() <= 1)
+            return 0;
+
+        int count = cycles.size();
+        long totalBytes = 0;
+        for (int cycle : cycles)
+            totalBytes += fileForCycle(cycle).length();
+        long expiredBefore = time.currentTimeMillis() - retentionPolicy.maxAgeMS();
+        TailerPositions positions = tailerPositions(false);
+        long lowestIndex = positions == null ? TailerPositions.NO_INDEX : positions.lowestIndex();
+        int lowestCycle = lowestIndex == TailerPositions.NO_INDEX ? Integer.MAX_VALUE : rollCycle.toCycle(lowestIndex);
+
+        int deleted = 0;
+        for (int cycle : cycles.headSet(cycles.last(), false)) {
+            long cycleEnd = epoch + ((cycle >> rollCycle.subCycleBits()) + 1L) * rollCycle.length();
+            if (count <= retentionPolicy.maxCycles()
+                    && totalBytes <= retentionPolicy.maxBytes()
+                    && cycleEnd > expiredBefore)
+                break;
+            // a named tailer has still to read this cycle.
+            if (cycle >= lowestCycle)
+                break;
+            File file = fileForCycle(cycle);
+            long length = file.length();
+            if (!deleteIfUnused(cycle, file))
+                break;
+            count--;
+            totalBytes -= length;
+            deleted++;
+        }
+        if (deleted > 0)
+            // rescan the directory on the next call to firstCycle()
+            firstAndLastCycleTime = 0;
+        return deleted;
+    }
+
+    /**
+     * Deletes the file of a cycle, unless it is in use or pinned by a tailer or appender of this
+     * queue. The tailers and appenders of other processes are not checked.
+     */
+    synchronized boolean deleteIfUnused(int cycle, @NotNull File file) {
+        return !pinnedCycles.containsKey(cycle) && pool.deleteIfUnused(cycle, epoch, file);
+    }
+
+    /**
+     * Keeps a cycle from being deleted, e.g. by a tailer which has released its store to stay
+     * within the mapped memory budget, but has still to read it.
+     *
+     * @return false if the queue is closed, so there is nothing to unpin.
+     */
+    synchronized boolean pin(int cycle) {
+        if (isClosed())
+            return false;
+        pinnedCycles.merge(cycle, 1, Integer::sum);
+        return true;
+    }
+
+    synchronized void unpin(int cycle) {
+        pinnedCycles.computeIfPresent(cycle, (c, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * @param create whether to create the checkpoints file if there isn't one
+     * @return the last source index read by the excerpts written to this queue, by source id.
+     */
+    @Nullable
+    synchronized SourceCheckpoints sourceCheckpoints(boolean create) {
+        if (sourceCheckpoints == null && !isClosed()) {
+            try {
+                sourceCheckpoints = SourceCheckpoints.open(path, create && !readOnly);
+            } catch (IOException e) {
+                Jvm.warn().on(getClass(), "Unable to open the source checkpoints of " + path, e);
+            }
+        }
+        return sourceCheckpoints;
+    }
+
+    /**
+     * @param create whether to create the positions file if there isn't one
+     * @return the next index to be read by each named tailer.
+     */
+    @Nullable
+    synchronized TailerPositions tailerPositions(boolean create) {
+        if (tailerPositions == null && !isClosed()) {
+            try {
+                if (create)
+                    path.mkdirs();
+                tailerPositions = TailerPositions.open(path, create && !readOnly);
+            } catch (IOException e) {
+                Jvm.warn().on(getClass(), "Unable to open the tailer positions of " + path, e);
+            }
+        }
+        return tailerPositions;
+    }
+
+    /**
+     * @return the length of every excerpt in the cycles this queue creates, or 0 if they can be
+     * any length.
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    /**
+     * @param create whether to create the file, if appenders should record what they write.
+     * @return the last excerpt written, or null if it isn't recorded.
+     */
+    @Nullable
+    synchronized LastWritten lastWritten(boolean create) {
+        if (lastWritten == null && !isClosed()) {
+            try {
+                create &= trackLastWritten;
+                if (create)
+                    path.mkdirs();
+                lastWritten = LastWritten.open(path, create);
+            } catch (IOException e) {
+                Jvm.warn().on(getClass(), "Unable to open the last written of " + path, e);
+            }
+        }
+        return lastWritten;
+    }
+
+    @Nullable
+    private QueueMetrics openMetrics() {
+        try {
+            if (!readOnly)
+                path.mkdirs();
+            QueueMetrics metrics = QueueMetrics.open(path, !readOnly);
+            if (metrics != null && !readOnly)
+                metrics.set(QueueMetrics.Gauge.CYCLE_SHIFT, Long.numberOfTrailingZeros(rollCycle.toIndex(1, 0)));
+            return metrics;
+        } catch (IOException e) {
+            Jvm.warn().on(getClass(), "Unable to open the metrics of " + path, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the counters of this queue, or null if it was built without metrics.
+     */
+    @Nullable
+    public QueueMetrics metrics() {
+        return metrics;
+    }
+
     public <T> void addCloseListener(T key, Consumer<T> closer) {
         synchronized (closers) {
             closers.put(key, closer);
@@ -460,7 +843,21 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
                 threadLocalResources.clear();
             }
         }
+        if (backgroundEventLoop != null)
+            backgroundEventLoop.close();
+        if (backgroundIndexer != null)
+            backgroundIndexer.close();
+        synchronized (this) {
+            if (sourceCheckpoints != null)
+                sourceCheckpoints.close();
+            if (tailerPositions != null)
+                tailerPositions.close();
+            if (lastWritten != null)
+                lastWritten.close();
+        }
         this.pool.close();
+        if (metrics != null)
+            metrics.close();
     }
 
     @Override
@@ -473,6 +870,24 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
         return this.rollCycle.current(time, epoch);
     }
 
+    /**
+     * @param appenderCycle the cycle an appender is on, or Integer.MIN_VALUE if none.
+     * @return the cycle for the appender to write to. With sub cycles, see {@link
+     * RollCycle#subCycleBits()}, this is the latest sub cycle of the current period rather than the
+     * first.
+     */
+    int appendCycle(int appenderCycle) {
+        int cycle = cycle();
+        int bits = rollCycle.subCycleBits();
+        if (bits == 0)
+            return cycle;
+        if ((appenderCycle >> bits) == (cycle >> bits))
+            return Math.max(appenderCycle, cycle);
+        // another appender may have rolled on size already.
+        int lastCycle = lastCycle();
+        return (lastCycle >> bits) == (cycle >> bits) ? Math.max(lastCycle, cycle) : cycle;
+    }
+
     @Override
     public long firstIndex() {
         // TODO - as discussed, peter is going find another way to do this as this solution
@@ -485,9 +900,22 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
         return rollCycle().toIndex(cycle, 0);
     }
 
+    /**
+     * @return the names of the files in the queue directory and the archive.
+     */
     @Nullable
     String[] getList() {
-        return path.list();
+        String[] files = path.list();
+        if (archivePath == null)
+            return files;
+        String[] archived = archivePath.list();
+        if (archived == null || archived.length == 0)
+            return files;
+        if (files == null)
+            return archived;
+        String[] all = Arrays.copyOf(files, files.length + archived.length);
+        System.arraycopy(archived, 0, all, files.length, archived.length);
+        return all;
     }
 
     private void setFirstAndLastCycle() {
@@ -584,6 +1012,13 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
         return MappedBytes.mappedBytes(cycleFile, chunkSize, overlapSize, readOnly);
     }
 
+    /**
+     * @return the bytes an appender or tailer maps of a cycle, one block and its overlap.
+     */
+    long mappedSize() {
+        return OS.pageAlign(blockSize) + OS.pageAlign(blockSize / 4);
+    }
+
     private int toCycle(@Nullable Map.Entry<Long, File> entry) throws ParseException {
         if (entry == null || entry.getValue() == null)
             return -1;
@@ -610,10 +1045,8 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
         public WireStore acquire(int cycle, boolean createIfAbsent) {
 
             SingleChronicleQueue that = SingleChronicleQueue.this;
-            @NotNull final RollingResourcesCache.Resource dateValue = that
-                    .dateCache.resourceFor(cycle);
             try {
-                File path = dateValue.path;
+                File path = fileForCycle(cycle);
                 final File parentFile = path.getParentFile();
                 if (parentFile != null && !parentFile.exists()) {
                     if (createIfAbsent)
@@ -625,8 +1058,11 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
                 if (!path.exists() && !createIfAbsent)
                     return null;
 
-                if (createIfAbsent)
+                if (createIfAbsent) {
                     checkDiskSpace(path);
+                    if (!path.exists())
+                        Preallocator.claim(path);
+                }
 
                 final MappedBytes mappedBytes = mappedBytes(path);
                 AbstractWire wire = (AbstractWire) wireType.apply(mappedBytes);
@@ -671,6 +1107,8 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
                 else if (unallocatedBytes < (100 << 20)) // if less than 10 Megabytes
                     LOG.warn("your disk is almost full, warning: chronicle-queue may crash if it runs out of space.");
             }
+            if (!path.exists() && !SingleChronicleQueue.this.checkDiskSpace())
+                throw new InsufficientDiskSpaceException("Less than " + diskSpaceReserve + " bytes usable to create " + path);
         }
 
         /**
@@ -688,8 +1126,16 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
             final RollingResourcesCache dateCache = SingleChronicleQueue.this.dateCache;
             final NavigableMap<Long, File> tree = new TreeMap<>();
 
+            if (archivePath != null) {
+                final File[] archived = archivePath.listFiles((File file) -> file.getName().endsWith(SUFFIX));
+                if (archived != null)
+                    for (File file : archived)
+                        tree.put(dateCache.toLong(file), file);
+            }
+
             final File[] files = parentFile.listFiles((File file) -> file.getName().endsWith(SUFFIX));
 
+            // a cycle still in the queue directory is used ahead of its copy in the archive.
             for (File file : files) {
                 tree.put(dateCache.toLong(file), file);
             }
@@ -705,7 +1151,7 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
                 throw new AssertionError("direction is NONE");
             assert currentCycle >= 0 : "currentCycle=" + Integer.toHexString(currentCycle);
             final NavigableMap<Long, File> tree = cycleTree();
-            final File currentCycleFile = dateCache.resourceFor(currentCycle).path;
+            final File currentCycleFile = fileForCycle(currentCycle);
 
             if (!currentCycleFile.exists())
                 throw new IllegalStateException("file not exists, currentCycle, " + "file=" + currentCycleFile);
@@ -744,7 +1190,7 @@ public class SingleChronicleQueue implements RollingChronicleQueue {
         }
 
         private Long toKey(int cyle, String m) {
-            final File file = dateCache.resourceFor(cyle).path;
+            final File file = fileForCycle(cyle);
             if (!file.exists())
                 throw new IllegalStateException("'file not found' for the " + m + ", file=" + file);
             return dateCache.toLong(file);
@@ -20,7 +20,9 @@ import net.openhft.chronicle.bytes.BytesStore;
 import net.openhft.chronicle.bytes.MappedBytes;
 import net.openhft.chronicle.core.threads.EventLoop;
 import net.openhft.chronicle.core.time.TimeProvider;
+import net.openhft.chronicle.queue.BackPressurePolicy;
 import net.openhft.chronicle.queue.BufferMode;
+import net.openhft.chronicle.queue.RetentionPolicy;
 import net.openhft.chronicle.queue.RollCycle;
 import net.openhft.chronicle.queue.impl.AbstractChronicleQueueBuilder;
 import net.openhft.chronicle.queue.impl.RollingChronicleQueue;
@@ -46,6 +48,7 @@ public class SingleChronicleQueueBuilder<S extends SingleChronicleQueueBuilder>
         CLASS_ALIASES.addAlias(SCQRoll.class, "SCQSRoll");
         CLASS_ALIASES.addAlias(SCQIndexing.class, "SCQSIndexing");
         CLASS_ALIASES.addAlias(SingleChronicleQueueStore.class, "SCQStore");
+        CLASS_ALIASES.addAlias(FixedRecordStore.class);
         CLASS_ALIASES.addAlias(TimedStoreRecovery.class);
     }
 
@@ -114,7 +117,19 @@ public class SingleChronicleQueueBuilder<S extends SingleChronicleQueueBuilder>
 
     @NotNull
     static SingleChronicleQueueStore createStore(@NotNull RollingChronicleQueue queue, @NotNull Wire wire) {
-        final SingleChronicleQueueStore wireStore = new SingleChronicleQueueStore(
+        int recordSize = queue instanceof SingleChronicleQueue ? ((SingleChronicleQueue) queue).recordSize() : 0;
+        final SingleChronicleQueueStore wireStore = recordSize > 0
+                ? new FixedRecordStore(
+                queue.rollCycle(),
+                queue.wireType(),
+                (MappedBytes) wire.bytes(),
+                queue.epoch(),
+                queue.indexCount(),
+                queue.indexSpacing(),
+                queue.recoverySupplier().apply(queue.wireType()),
+                queue.deltaCheckpointInterval(),
+                recordSize)
+                : new SingleChronicleQueueStore(
                 queue.rollCycle(),
                 queue.wireType(),
                 (MappedBytes) wire.bytes(),
@@ -284,6 +299,71 @@ public class SingleChronicleQueueBuilder<S extends SingleChronicleQueueBuilder>
         return super.storeFileListener(storeFileListener);
     }
 
+    @Override
+    public SingleChronicleQueueBuilder<S> retentionPolicy(@NotNull RetentionPolicy retentionPolicy) {
+        return super.retentionPolicy(retentionPolicy);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> binaryHistory(boolean binaryHistory) {
+        return super.binaryHistory(binaryHistory);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> metrics(boolean metrics) {
+        return super.metrics(metrics);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> namedTailerBatch(int namedTailerBatch) {
+        return super.namedTailerBatch(namedTailerBatch);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> backPressurePolicy(@NotNull BackPressurePolicy backPressurePolicy) {
+        return super.backPressurePolicy(backPressurePolicy);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> preallocateBytes(long preallocateBytes) {
+        return super.preallocateBytes(preallocateBytes);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> diskSpaceReserve(long diskSpaceReserve) {
+        return super.diskSpaceReserve(diskSpaceReserve);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> backgroundIndexing(boolean backgroundIndexing) {
+        return super.backgroundIndexing(backgroundIndexing);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> trackLastWritten(boolean trackLastWritten) {
+        return super.trackLastWritten(trackLastWritten);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> recordSize(int recordSize) {
+        return super.recordSize(recordSize);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> archivePath(@Nullable File archivePath) {
+        return super.archivePath(archivePath);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> hotCycles(int hotCycles) {
+        return super.hotCycles(hotCycles);
+    }
+
+    @Override
+    public SingleChronicleQueueBuilder<S> hotBytes(long hotBytes) {
+        return super.hotBytes(hotBytes);
+    }
+
     @Override
     public SingleChronicleQueueBuilder<S> recoverySupplier(StoreRecoveryFactory recoverySupplier) {
         return super.recoverySupplier(recoverySupplier);
@@ -27,6 +27,7 @@ import net.openhft.chronicle.core.io.IORuntimeException;
 import net.openhft.chronicle.core.util.StringUtils;
 import net.openhft.chronicle.queue.*;
 import net.openhft.chronicle.queue.impl.ExcerptContext;
+import net.openhft.chronicle.queue.impl.QueueMetrics;
 import net.openhft.chronicle.queue.impl.RollingChronicleQueue;
 import net.openhft.chronicle.queue.impl.WireStore;
 import net.openhft.chronicle.wire.*;
@@ -63,7 +64,35 @@ public class SingleChronicleQueueExcerpts {
     // *************************************************************************
 
     public interface InternalAppender {
+        /**
+         * Writes the excerpt at {@code index}. If the queue has {@code binaryHistory}, the bytes
+         * are written after the history record of this thread, as for any other excerpt.
+         */
         void writeBytes(long index, BytesStore bytes);
+
+        /**
+         * Reserves {@code length} bytes in the mapped file for the excerpt at {@code index}. The
+         * returned bytes are positioned at the start of the excerpt, after the history record of
+         * this thread if the queue has {@code binaryHistory}, and limited to {@code length}, so
+         * they can be written to in place. The excerpt is published by {@link #commitBytes()}, or
+         * given up by {@link #abortBytes()}.
+         *
+         * @return the reserved bytes, or null if the index already exists.
+         */
+        @Nullable
+        Bytes<?> reserveBytes(long index, int length);
+
+        /**
+         * Publishes the excerpt reserved by {@link #reserveBytes(long, int)}.
+         */
+        void commitBytes();
+
+        /**
+         * Gives up the excerpt reserved by {@link #reserveBytes(long, int)}, e.g. when what was to
+         * fill it can't be read. The space is left as meta data, which tailers skip, and the index
+         * can be reserved or written again.
+         */
+        void abortBytes();
     }
 
     /**
@@ -93,9 +122,42 @@ public class SingleChronicleQueueExcerpts {
         @Nullable
         private PretoucherState pretoucher = null;
         private Padding padToCacheLines = Padding.SMART;
+        // the excerpt reserved by reserveBytes(), if any.
+        private long reservedIndex;
+        private int reservedLength = -1;
+        private long reservedWriteLimit;
+        // the encoding of the history field a method writer starts an excerpt with.
+        @Nullable
+        private byte[] historyPrefix;
+        @Nullable
+        private SourceCheckpoints sourceCheckpoints;
+        @Nullable
+        private final QueueMetrics metrics;
+        @Nullable
+        private final BackPressure backPressure;
+        @Nullable
+        private final LastWritten lastWritten;
+        // the length of every excerpt of the store, or 0 if they can be any length.
+        private int recordSize = 0;
+        // the last excerpt counted without the header number, when indexing lazily.
+        private long countedSequence = -1, countedPosition = -1;
+        private final MappedMemoryBudget.Mapping mapping = new MappedMemoryBudget.Mapping() {
+            @Override
+            boolean busy() {
+                return (!context.isClosed && context.wire != null) || reservedLength >= 0;
+            }
+
+            @Override
+            void unmap() {
+                unmapCycle();
+            }
+        };
 
         StoreAppender(@NotNull SingleChronicleQueue queue) {
             this.queue = queue;
+            this.metrics = queue.metrics();
+            this.backPressure = queue.backPressurePolicy().isNone() ? null : new BackPressure(queue, queue.backPressurePolicy());
+            this.lastWritten = queue.lastWritten(true);
             queue.addCloseListener(this, StoreAppender::close);
             context = new StoreAppenderContext();
         }
@@ -140,6 +202,20 @@ public class SingleChronicleQueueExcerpts {
         }
 
         void close() {
+            MappedMemoryBudget.INSTANCE.unmapped(mapping);
+            unmapCycle();
+            if (backPressure != null)
+                backPressure.release();
+            if (bufferWire != null) {
+                bufferWire.bytes().release();
+                bufferWire = null;
+            }
+        }
+
+        /**
+         * Releases the store, which is acquired again by the next write.
+         */
+        private void unmapCycle() {
             Wire w0 = wireForIndex;
             wireForIndex = null;
             if (w0 != null)
@@ -150,18 +226,17 @@ public class SingleChronicleQueueExcerpts {
                 w.bytes().release();
             if (store != null)
                 queue.release(store);
-            if (bufferWire != null) {
-                bufferWire.bytes().release();
-                bufferWire = null;
-            }
             store = null;
+            cycle = Integer.MIN_VALUE;
         }
 
         @Override
         public void pretouch() {
-            setCycle(queue.cycle(), true);
+            setCycle(queue.appendCycle(cycle), true);
             if (pretoucher == null)
-                pretoucher = new PretoucherState(() -> this.store.writePosition());
+                pretoucher = metrics == null
+                        ? new PretoucherState(() -> this.store.writePosition())
+                        : new CountingPretoucherState(() -> this.store.writePosition(), metrics);
             Wire wire = this.wire;
             if (wire != null)
                 pretoucher.pretouch((MappedBytes) wire.bytes());
@@ -184,6 +259,12 @@ public class SingleChronicleQueueExcerpts {
             return queue.timeoutMS;
         }
 
+        @Nullable
+        @Override
+        public QueueMetrics metrics() {
+            return metrics;
+        }
+
         void lastIndex(long index) {
             this.lastIndex = index;
         }
@@ -209,6 +290,8 @@ public class SingleChronicleQueueExcerpts {
         private void setCycle(int cycle, boolean createIfAbsent) {
             if (cycle != this.cycle)
                 setCycle2(cycle, createIfAbsent);
+            else
+                MappedMemoryBudget.INSTANCE.used(mapping);
         }
 
         private void setCycle2(int cycle, boolean createIfAbsent) {
@@ -217,11 +300,13 @@ public class SingleChronicleQueueExcerpts {
                         "before Epoch. cycle=" + cycle);
 
             SingleChronicleQueue queue = this.queue;
+            long start = metrics == null ? 0 : System.nanoTime();
 
             if (this.store != null)
                 queue.release(this.store);
 
             this.store = queue.storeForCycle(cycle, queue.epoch(), createIfAbsent);
+            this.recordSize = store instanceof FixedRecordStore ? ((FixedRecordStore) store).recordSize() : 0;
             resetWires(queue);
 
             // only set the cycle after the wire is set.
@@ -231,6 +316,11 @@ public class SingleChronicleQueueExcerpts {
             wire.pauser(queue.pauserSupplier.get());
             resetPosition();
             queue.onRoll(cycle);
+            MappedMemoryBudget.INSTANCE.mapped(mapping, queue.mappedSize());
+            if (metrics != null) {
+                metrics.add(QueueMetrics.Counter.ROLLS, QueueMetrics.Counter.ROLL_NANOS, System.nanoTime() - start);
+                metrics.set(QueueMetrics.Gauge.LAST_ROLL_MS, queue.time().currentTimeMillis());
+            }
         }
 
         private void resetWires(@NotNull SingleChronicleQueue queue) {
@@ -253,6 +343,7 @@ public class SingleChronicleQueueExcerpts {
         private void resetPosition() throws UnrecoverableTimeoutException {
             try {
 
+                countedPosition = -1;
                 if (store == null || wire == null)
                     return;
                 position(store.writePosition());
@@ -279,14 +370,40 @@ public class SingleChronicleQueueExcerpts {
         @NotNull
         @Override
         public DocumentContext writingDocument(boolean metaData) throws UnrecoverableTimeoutException {
+            queue.assertDiskSpace();
             assert checkAppendingThread();
             assert checkWritePositionHeaderNumber();
             boolean ok = false;
             try {
-                int cycle = queue.cycle();
+                int cycle = cycleToWrite();
 
                 if (this.cycle != cycle || wire == null)
                     rollCycleTo(cycle);
+                else
+                    MappedMemoryBudget.INSTANCE.used(mapping);
+
+                if (recordSize > 0) {
+                    if (metaData)
+                        throw new IllegalStateException("Meta data can't be written to a queue of fixed size records");
+                    // written to a buffer, and appended with its length known on close, when
+                    // back pressure is applied.
+                    context.isClosed = false;
+                    context.fixedRecord = true;
+                    context.wire = acquireBufferWire();
+                    context.metaData(false);
+                    ok = true;
+                    return context;
+                }
+
+                if (!metaData && backPressure != null && !backPressure.beforeAppend()) {
+                    // written to a buffer which is discarded on close.
+                    context.isClosed = false;
+                    context.dropped = true;
+                    context.wire = acquireBufferWire();
+                    context.metaData(false);
+                    ok = true;
+                    return context;
+                }
 
                 int safeLength = (int) queue.overlapSize();
                 for (int i = 0; i < 128; i++) {
@@ -298,10 +415,14 @@ public class SingleChronicleQueueExcerpts {
                         context.wire = wire;
                         context.padToCacheAlign = padToCacheAlignMode() != Padding.NEVER;
                         context.metaData(metaData);
+                        if (!metaData)
+                            appendHistory(wire);
                         ok = true;
                         return context;
 
                     } catch (EOFException theySeeMeRolling) {
+                        if (metrics != null)
+                            metrics.increment(QueueMetrics.Counter.HEADER_RETRIES);
                         cycle = handleRoll(cycle);
                     }
                 }
@@ -315,8 +436,8 @@ public class SingleChronicleQueueExcerpts {
 
         private int handleRoll(int cycle) {
             assert !((AbstractWire) wire).isInsideHeader();
-            int qCycle = queue.cycle();
-            if (cycle < queue.cycle()) {
+            int qCycle = queue.appendCycle(cycle);
+            if (cycle < qCycle) {
                 setCycle2(cycle = qCycle, true);
             } else if (cycle == qCycle) {
                 // for the rare case where the qCycle has just changed in the last
@@ -418,12 +539,15 @@ public class SingleChronicleQueueExcerpts {
                 Bytes<?> wireBytes = wire.bytes();
                 try {
 //                    wire.bytes().writePosition(store.writePosition());
-                    int length = bytes.length();
+                    int length = bytes.length() + historyLength();
+                    int recordLength = recordLength(length);
                     // sets the position
                     wire.headerNumber(index);
-                    position(store.writeHeader(wire, length, length, timeoutMS()));
+                    position(store.writeHeader(wire, recordLength, recordLength, timeoutMS()));
+                    appendHistory(wire);
                     wireBytes.write(bytes);
-                    wire.updateHeader(length, position, false);
+                    padRecord(wireBytes, recordLength);
+                    wire.updateHeader(recordLength, position, false);
 
                     writeIndexForPosition(index, position);
 
@@ -431,9 +555,13 @@ public class SingleChronicleQueueExcerpts {
                     lastPosition = position;
                     lastCycle = cycle;
                     store.writePosition(position);
+                    lastWritten(index);
+                    if (metrics != null)
+                        metrics.appended(length, index, position);
 
                 } catch (EOFException theySeeMeRolling) {
                     if (wireBytes.compareAndSwapInt(wireBytes.writePosition(), Wires.END_OF_DATA, Wires.NOT_COMPLETE)) {
+                        appendHistory(wire);
                         wireBytes.write(bytes);
                         wire.updateHeader(0, position, false);
                     }
@@ -456,6 +584,102 @@ public class SingleChronicleQueueExcerpts {
             }
         }
 
+        @Nullable
+        @Override
+        public Bytes<?> reserveBytes(long index, int length) {
+            if (index < 0)
+                throw new IllegalArgumentException("index: " + index);
+            if (length <= 0)
+                throw new UnsupportedOperationException("Cannot append a zero length message");
+            assert checkAppendingThread();
+            boolean ok = false;
+            try {
+                moveToIndexForWrite(index);
+
+                int recordLength = recordLength(length + historyLength());
+                wire.headerNumber(index);
+                position(store.writeHeader(wire, recordLength, recordLength, timeoutMS()));
+                Bytes<?> wireBytes = wire.bytes();
+                // padded before the bytes are written in place.
+                padRecord(wireBytes, recordLength);
+                wireBytes.writePosition(position + 4);
+                appendHistory(wire);
+                reservedWriteLimit = wireBytes.writeLimit();
+                wireBytes.writeLimit(wireBytes.writePosition() + length);
+                reservedIndex = index;
+                reservedLength = recordLength;
+                ok = true;
+                return wireBytes;
+
+            } catch (IllegalStateException ise) {
+                if (ise.getMessage().contains("index already exists"))
+                    return null;
+                throw ise;
+
+            } catch (EOFException e) {
+                throw new IllegalStateException("Unable to reserve index " + Long.toHexString(index) +
+                        " as its cycle has ended", e);
+
+            } catch (StreamCorruptedException e) {
+                throw Jvm.rethrow(e);
+
+            } finally {
+                if (!ok)
+                    assert resetAppendingThread();
+            }
+        }
+
+        @Override
+        public void commitBytes() {
+            if (reservedLength < 0)
+                throw new IllegalStateException("No bytes have been reserved");
+            try {
+                Bytes<?> wireBytes = wire.bytes();
+                wireBytes.writeLimit(reservedWriteLimit);
+                // the bytes may have been written in place rather than appended.
+                wireBytes.writePosition(position + 4 + reservedLength);
+                wire.updateHeader(reservedLength, position, false);
+
+                writeIndexForPosition(reservedIndex, position);
+
+                lastIndex(reservedIndex);
+                lastPosition = position;
+                lastCycle = cycle;
+                store.writePosition(position);
+                lastWritten(reservedIndex);
+                if (metrics != null)
+                    metrics.appended(reservedLength, reservedIndex, position);
+
+            } catch (StreamCorruptedException e) {
+                throw Jvm.rethrow(e);
+
+            } finally {
+                reservedLength = -1;
+                assert resetAppendingThread();
+            }
+        }
+
+        @Override
+        public void abortBytes() {
+            if (reservedLength < 0)
+                throw new IllegalStateException("No bytes have been reserved");
+            try {
+                Bytes<?> wireBytes = wire.bytes();
+                wireBytes.writeLimit(reservedWriteLimit);
+                wireBytes.writePosition(position + 4 + reservedLength);
+                wire.updateHeader(reservedLength, position, true);
+                // back to the last excerpt written, as the header number has moved on.
+                resetPosition();
+
+            } catch (StreamCorruptedException e) {
+                throw Jvm.rethrow(e);
+
+            } finally {
+                reservedLength = -1;
+                assert resetAppendingThread();
+            }
+        }
+
         private void position(long position) {
             if (position > store.writePosition() + queue.blockSize())
                 throw new IllegalArgumentException("pos: " + position + ", store.writePosition()=" +
@@ -551,33 +775,61 @@ public class SingleChronicleQueueExcerpts {
         void beforeAppend(Wire wire, long index) {
         }
 
+        /**
+         * @return the length of the history record each excerpt starts with, if the queue has one.
+         */
+        private int historyLength() {
+            return queue.binaryHistory ? BinaryMessageHistory.get().writeLength() : 0;
+        }
+
+        private void appendHistory(@NotNull Wire wire) {
+            if (queue.binaryHistory)
+                BinaryMessageHistory.get().writeTo(wire.bytes(), System.nanoTime());
+        }
+
         private <T> void append(int length, @NotNull WireWriter<T> wireWriter, T writer) throws
                 UnrecoverableTimeoutException {
 
+            queue.assertDiskSpace();
+            // before this thread is marked as appending, as it may block or throw.
+            if (backPressure != null && !backPressure.beforeAppend()) {
+                if (metrics != null)
+                    metrics.increment(QueueMetrics.Counter.DROPPED);
+                return;
+            }
             assert checkAppendingThread();
+            length += historyLength();
             try {
-                int cycle = queue.cycle();
+                int cycle = cycleToWrite();
                 if (this.cycle != cycle || wire == null)
                     rollCycleTo(cycle);
 
                 try {
-                    position(store.writeHeader(wire, length, length, timeoutMS()));
+                    int recordLength = recordLength(length);
+                    position(store.writeHeader(wire, recordLength, recordLength, timeoutMS()));
                     assert ((AbstractWire) wire).isInsideHeader();
                     beforeAppend(wire, wire.headerNumber() + 1);
+                    appendHistory(wire);
                     wireWriter.write(writer, wire);
-                    wire.updateHeader(length, position, false);
+                    padRecord(wire.bytes(), recordLength);
+                    wire.updateHeader(recordLength, position, false);
                     lastIndex(wire.headerNumber());
                     lastPosition = position;
                     lastCycle = cycle;
                     store.writePosition(position);
+                    lastWritten(lastIndex);
                     writeIndexForPosition(lastIndex, position);
                 } catch (EOFException theySeeMeRolling) {
+                    if (metrics != null)
+                        metrics.increment(QueueMetrics.Counter.HEADER_RETRIES);
                     try {
                         append2(length, wireWriter, writer);
                     } catch (EOFException e) {
                         throw new AssertionError(e);
                     }
                 }
+                if (metrics != null)
+                    metrics.appended(length, wire.headerNumber(), position);
             } catch (StreamCorruptedException e) {
                 throw new AssertionError(e);
             } finally {
@@ -585,6 +837,41 @@ public class SingleChronicleQueueExcerpts {
             }
         }
 
+        /**
+         * @return the cycle to write the next excerpt to, the next sub cycle if the queue rolls
+         * on size and this one is full.
+         */
+        private int cycleToWrite() {
+            int cycle = queue.appendCycle(this.cycle);
+            RollCycle rollCycle = queue.rollCycle();
+            int subCycleMask = (1 << rollCycle.subCycleBits()) - 1;
+            if (cycle != this.cycle || wire == null || store == null || (cycle & subCycleMask) == subCycleMask)
+                return cycle;
+            return rollCycle.isFull(store.writePosition(), excerptsInCycle()) ? cycle + 1 : cycle;
+        }
+
+        /**
+         * @return the number of excerpts in the current cycle.
+         */
+        private long excerptsInCycle() {
+            long headerNumber = wire.headerNumber();
+            if (headerNumber != Long.MIN_VALUE)
+                return queue.rollCycle().toSequenceNumber(headerNumber + 1);
+            // indexing lazily, so count on from the last excerpt counted.
+            SingleChronicleQueueStore store = (SingleChronicleQueueStore) this.store;
+            long position = store.writePosition();
+            try {
+                if (countedPosition < 0 || position < countedPosition)
+                    countedSequence = store.sequenceForPosition(this, position, true);
+                else if (position > countedPosition)
+                    countedSequence = store.sequenceForPositionFrom(this, position, countedSequence, countedPosition);
+            } catch (EOFException | StreamCorruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            countedPosition = position;
+            return countedSequence + 1;
+        }
+
         private void rollCycleTo(int cycle) throws UnrecoverableTimeoutException {
             if (this.cycle == cycle)
                 throw new AssertionError();
@@ -603,7 +890,7 @@ public class SingleChronicleQueueExcerpts {
          * if a new message was written, but this doesn't create a new cycle or add a message.
          */
         public void writeEndOfCycleIfRequired() {
-            if (wire != null && queue.cycle() != cycle) {
+            if (wire != null && queue.appendCycle(cycle) != cycle) {
                 try {
                     store.writeEOF(wire, timeoutMS());
                 } catch (TimeoutException e) {
@@ -614,11 +901,51 @@ public class SingleChronicleQueueExcerpts {
 
         <T> void append2(int length, @NotNull WireWriter<T> wireWriter, T writer) throws
                 UnrecoverableTimeoutException, EOFException, StreamCorruptedException {
-            setCycle(Math.max(queue.cycle(), cycle + 1), true);
-            position(store.writeHeader(wire, length, length, timeoutMS()));
+            setCycle(Math.max(queue.appendCycle(cycle), cycle + 1), true);
+            int recordLength = recordLength(length);
+            position(store.writeHeader(wire, recordLength, recordLength, timeoutMS()));
             beforeAppend(wire, wire.headerNumber() + 1);
+            appendHistory(wire);
             wireWriter.write(writer, wire);
-            wire.updateHeader(length, position, false);
+            padRecord(wire.bytes(), recordLength);
+            long index = wire.headerNumber() + 1;
+            wire.updateHeader(recordLength, position, false);
+            store.writePosition(position);
+            lastWritten(index);
+        }
+
+        /**
+         * @return the length to write an excerpt of length bytes as, the record size if the store
+         * has one.
+         */
+        private int recordLength(int length) {
+            if (recordSize == 0)
+                return length;
+            if (length > recordSize)
+                throw new IllegalArgumentException("An excerpt of " + length + " bytes is longer than the record size of " + recordSize);
+            return recordSize;
+        }
+
+        /**
+         * Pads the excerpt being written with zeros to recordLength bytes.
+         */
+        private void padRecord(@NotNull Bytes<?> bytes, int recordLength) {
+            long end = position + 4 + recordLength;
+            if (bytes.writePosition() < end) {
+                bytes.zeroOut(bytes.writePosition(), end);
+                bytes.writePosition(end);
+            }
+        }
+
+        /**
+         * Records index as the last excerpt written, once its header and the write position of the
+         * store have been updated, so a tailer is never sent to an excerpt it can't read yet.
+         *
+         * @param index of the excerpt at position, negative if it isn't known.
+         */
+        private void lastWritten(long index) {
+            if (lastWritten != null && index >= 0)
+                lastWritten.written(index, position);
         }
 
         private boolean checkAppendingThread() {
@@ -680,10 +1007,56 @@ public class SingleChronicleQueueExcerpts {
             return true;
         }
 
+        /**
+         * If the excerpt at position was written with its history, records the source it was
+         * written after reading, for {@link StoreTailer#afterLastWritten(ChronicleQueue)}.
+         */
+        private void checkpointSource(long position) {
+            MessageHistory history = queue.binaryHistory ? BinaryMessageHistory.get() : MessageHistory.get();
+            int sources = history.sources();
+            if (sources == 0 || !(queue.binaryHistory || startsWithHistory(wire.bytes(), position + 4)))
+                return;
+            if (sourceCheckpoints == null) {
+                sourceCheckpoints = queue.sourceCheckpoints(true);
+                if (sourceCheckpoints == null)
+                    return;
+            }
+            sourceCheckpoints.checkpoint(history.sourceId(sources - 1), history.sourceIndex(sources - 1), lastIndex);
+        }
+
+        private boolean startsWithHistory(@NotNull Bytes<?> bytes, long start) {
+            byte[] prefix = historyPrefix;
+            if (prefix == null)
+                prefix = historyPrefix = fieldPrefix(queue.wireType(), "history");
+            if (bytes.writePosition() < start + prefix.length)
+                return false;
+            for (int i = 0; i < prefix.length; i++)
+                if (bytes.readByte(start + i) != prefix[i])
+                    return false;
+            return true;
+        }
+
+        @NotNull
+        private static byte[] fieldPrefix(@NotNull WireType wireType, @NotNull String name) {
+            Bytes<?> bytes = Bytes.elasticByteBuffer();
+            try {
+                wireType.apply(bytes).write(() -> name);
+                byte[] prefix = new byte[(int) bytes.readRemaining()];
+                bytes.read(prefix);
+                return prefix;
+            } finally {
+                bytes.release();
+            }
+        }
+
         class StoreAppenderContext implements DocumentContext {
 
             boolean isClosed;
             boolean padToCacheAlign = true;
+            // discard what is written, see BackPressurePolicy.Action.DROP
+            boolean dropped;
+            // written to the buffer, to be appended as a record of a fixed size.
+            boolean fixedRecord;
             private boolean metaData = false;
             @Nullable
             private Wire wire;
@@ -726,6 +1099,24 @@ public class SingleChronicleQueueExcerpts {
                     LOG.warn("Already Closed, close was called twice.");
                     return;
                 }
+                if (dropped) {
+                    dropped = false;
+                    isClosed = true;
+                    wire = StoreAppender.this.wire;
+                    assert resetAppendingThread();
+                    if (metrics != null)
+                        metrics.increment(QueueMetrics.Counter.DROPPED);
+                    return;
+                }
+                if (fixedRecord) {
+                    fixedRecord = false;
+                    isClosed = true;
+                    Bytes<?> bytes = wire.bytes();
+                    wire = StoreAppender.this.wire;
+                    assert resetAppendingThread();
+                    writeBytes(bytes);
+                    return;
+                }
 
                 try {
                     if (wire == StoreAppender.this.wire) {
@@ -740,9 +1131,13 @@ public class SingleChronicleQueueExcerpts {
                         if (!metaData) {
                             lastIndex(wire.headerNumber());
                             store.writePosition(position);
-                            if (lastIndex != Long.MIN_VALUE)
+                            lastWritten(lastIndex);
+                            if (metrics != null)
+                                metrics.appended(wire.bytes().writePosition() - position - 4, lastIndex, position);
+                            if (lastIndex != Long.MIN_VALUE) {
                                 writeIndexForPosition(lastIndex, position);
-                            else
+                                checkpointSource(position);
+                            } else
                                 assert lazyIndexing || lastIndex == Long.MIN_VALUE || checkIndex(lastIndex, position);
                         }
                         assert checkWritePositionHeaderNumber();
@@ -797,6 +1192,15 @@ public class SingleChronicleQueueExcerpts {
         private final StoreTailerContext context = new StoreTailerContext();
         private final int indexSpacingMask;
         long index; // index of the next read.
+        long headerPosition; // of the excerpt being read.
+        // excerpts whose header positions are known, to seek from without the index.
+        private long lastKnownIndex = Long.MIN_VALUE, lastKnownPosition;
+        private long checkpointIndex = Long.MIN_VALUE, checkpointPosition;
+        // the header positions of an index block read forward once, to read it backwards.
+        @Nullable
+        private long[] blockPositions;
+        private long blockIndex = Long.MIN_VALUE;
+        private int blockCount;
         @Nullable
         WireStore store;
         private int cycle;
@@ -807,9 +1211,45 @@ public class SingleChronicleQueueExcerpts {
         private boolean readAfterReplicaAcknowledged;
         @NotNull
         private TailerState state = UNINITIALISED;
+        // the store acknowledgements are written to, held until the acknowledged cycle changes.
+        @Nullable
+        private WireStore ackStore;
+        private int ackCycle = Integer.MIN_VALUE;
+        private long lastAckIndex = Long.MIN_VALUE;
+        // where history records are read to, instead of the history of the reading thread.
+        @Nullable
+        private BinaryMessageHistory history;
+        @Nullable
+        private final QueueMetrics metrics;
+        // the slot this tailer records its index in, if it is monitored.
+        private int metricsSlot = -1;
+        // where this tailer records its position, if it is named.
+        @Nullable
+        private TailerPositions positions;
+        private long positionSlot;
+        private int persistEvery, unpersisted;
+        // the store was released to stay within the mapped memory budget.
+        private boolean unmapped = false;
+        // the cycle kept from being deleted while unmapped, or Integer.MIN_VALUE.
+        private int pinnedCycle = Integer.MIN_VALUE;
+        // touches the pages ahead of a streaming tailer, or null if it isn't streaming.
+        @Nullable
+        private ReadAhead readAhead;
+        private final MappedMemoryBudget.Mapping mapping = new MappedMemoryBudget.Mapping() {
+            @Override
+            boolean busy() {
+                return context.isPresent();
+            }
+
+            @Override
+            void unmap() {
+                unmapCycle();
+            }
+        };
 
         public StoreTailer(@NotNull final SingleChronicleQueue queue) {
             this.queue = queue;
+            this.metrics = queue.metrics();
             this.setCycle(Integer.MIN_VALUE);
             this.index = 0;
             queue.addCloseListener(this, StoreTailer::close);
@@ -836,6 +1276,7 @@ public class SingleChronicleQueueExcerpts {
         }
 
         private void close() {
+            MappedMemoryBudget.INSTANCE.unmapped(mapping);
             context.wire(null);
             Wire w0 = wireForIndex;
             if (w0 != null)
@@ -843,6 +1284,32 @@ public class SingleChronicleQueueExcerpts {
             if (store != null)
                 queue.release(store);
             store = null;
+            releaseAckStore();
+            if (readAhead != null)
+                readAhead.release();
+            unpinCycle();
+        }
+
+        /**
+         * Releases the store, which is acquired again at the same index by the next read. The
+         * cycle is pinned until then, so retention and archiving leave it for this tailer.
+         */
+        private void unmapCycle() {
+            context.wire(null);
+            Wire w0 = wireForIndex;
+            wireForIndex = null;
+            if (w0 != null)
+                w0.bytes().release();
+            if (store != null) {
+                if (pinnedCycle == Integer.MIN_VALUE && queue.pin(cycle))
+                    pinnedCycle = cycle;
+                queue.release(store);
+            }
+            store = null;
+            state = UNINITIALISED;
+            unmapped = true;
+            if (readAhead != null)
+                readAhead.release();
         }
 
         @Override
@@ -860,6 +1327,12 @@ public class SingleChronicleQueueExcerpts {
             return queue.timeoutMS;
         }
 
+        @Nullable
+        @Override
+        public QueueMetrics metrics() {
+            return metrics;
+        }
+
         @Override
         public int sourceId() {
             return queue.sourceId;
@@ -878,6 +1351,14 @@ public class SingleChronicleQueueExcerpts {
         @Override
         public DocumentContext readingDocument(boolean includeMetaData) {
             try {
+                if (unmapped) {
+                    // if the cycle has gone regardless, e.g. deleted by another process, this
+                    // carries on from the state moveToIndex() leaves.
+                    moveToIndex(index);
+                    unmapped = false;
+                    unpinCycle();
+                } else
+                    MappedMemoryBudget.INSTANCE.used(mapping);
                 boolean next = false, tryAgain = true;
                 if (state == FOUND_CYCLE) {
                     try {
@@ -891,7 +1372,18 @@ public class SingleChronicleQueueExcerpts {
                     next = next0(includeMetaData);
 
                 if (context.present(next)) {
-                    context.setStart(context.wire().bytes().readPosition()-4);
+                    headerPosition = context.wire().bytes().readPosition() - 4;
+                    context.setStart(headerPosition);
+                    if (readAhead != null && direction == FORWARD)
+                        readAhead.readAhead(store, headerPosition);
+                    if (!context.isMetaData()) {
+                        known(index, headerPosition);
+                        if (metrics != null)
+                            metrics.add(QueueMetrics.Counter.READ, QueueMetrics.Counter.READ_BYTES,
+                                    context.wire().bytes().readRemaining());
+                        if (queue.binaryHistory)
+                            readHistory(context.wire().bytes());
+                    }
                     return context;
                 }
                 RollCycle rollCycle = queue.rollCycle();
@@ -909,6 +1401,78 @@ public class SingleChronicleQueueExcerpts {
             return NoDocumentContext.INSTANCE;
         }
 
+        private void readHistory(@NotNull Bytes<?> bytes) {
+            BinaryMessageHistory history = this.history;
+            if (history != null) {
+                history.readFrom(bytes);
+                return;
+            }
+            history = BinaryMessageHistory.get();
+            history.readFrom(bytes);
+            if (sourceId() != 0)
+                history.addSource(sourceId(), index);
+            history.addTiming(System.nanoTime());
+        }
+
+        /**
+         * Moves to the position recorded for the named tailer in slot, and records the position
+         * every persistEvery excerpts read, or never if it is 0.
+         */
+        void named(@NotNull TailerPositions positions, long slot, int persistEvery) {
+            long index = positions.index(slot);
+            if (index == TailerPositions.NO_INDEX || index < queue.firstIndex()) {
+                toStart();
+            } else if (moveToIndexResult(index) != FOUND && state != FOUND_CYCLE) {
+                // the cycle it was to read next hasn't been written yet.
+                toEnd();
+            }
+            if (persistEvery > 0) {
+                this.positions = positions;
+                this.positionSlot = slot;
+                this.persistEvery = persistEvery;
+                // a new name counts as behind from where it starts.
+                if (index == TailerPositions.NO_INDEX)
+                    persistPosition();
+            }
+        }
+
+        /**
+         * Records the next index this tailer will read, if it was created with a name, so a
+         * tailer created with the same name carries on from here.
+         */
+        public void persistPosition() {
+            if (positions == null || positions.isClosed())
+                return;
+            unpersisted = 0;
+            positions.index(positionSlot, index);
+        }
+
+        /**
+         * Records the next index this tailer will read in the metrics of the queue, under name, so
+         * its lag can be monitored from another process. Does nothing if the queue has no metrics.
+         *
+         * @return this
+         */
+        @NotNull
+        public StoreTailer monitored(@NotNull String name) {
+            if (metrics != null) {
+                metricsSlot = metrics.registerTailer(name);
+                if (metricsSlot < 0)
+                    Jvm.warn().on(getClass(), "No slot left to monitor the tailer " + name + " of " + queue.file());
+                else
+                    metrics.tailerIndex(metricsSlot, index);
+            }
+            return this;
+        }
+
+        /**
+         * Reads the history records of the excerpts into {@code history}, leaving the history of
+         * the reading thread as it was.
+         */
+        public void history(@Nullable BinaryMessageHistory history) {
+            this.history = history;
+        }
+
         private boolean next0(boolean includeMetaData) throws UnrecoverableTimeoutException, StreamCorruptedException {
             for (int i = 0; i < 1000; i++) {
                 switch (state) {
@@ -1008,9 +1572,9 @@ public class SingleChronicleQueueExcerpts {
             Bytes<?> bytes = wire().bytes();
             bytes.readLimit(bytes.capacity());
             if (readAfterReplicaAcknowledged) {
-                long lastSequenceAck = store.lastAcknowledgedIndexReplicated();
-                long seq = queue.rollCycle().toSequenceNumber(index);
-                if (seq > lastSequenceAck)
+                // acknowledgements are full indices, written with ordered writes to this store.
+                long lastIndexAck = store.lastAcknowledgedIndexReplicated();
+                if (index > lastIndexAck)
                     return false;
             }
 
@@ -1195,17 +1759,101 @@ public class SingleChronicleQueueExcerpts {
             }
 
             index(index);
-            ScanResult scanResult = this.store.moveToIndexForRead(this, sequenceNumber);
+            ScanResult scanResult = direction == BACKWARD ? moveBackward(index) : null;
+            if (scanResult == null)
+                scanResult = moveNear(index);
+            if (scanResult == null)
+                scanResult = this.store.moveToIndexForRead(this, sequenceNumber);
 
             Bytes<?> bytes = wire().bytes();
             if (scanResult == FOUND) {
                 state = FOUND_CYCLE;
+                known(index, bytes.readPosition());
                 return scanResult;
             }
             bytes.readLimit(bytes.readPosition());
             return scanResult;
         }
 
+        /**
+         * Moves to index by reading the headers from the last excerpt read, or the last one at an
+         * index spacing, if index is in the same cycle and no more than an index spacing after it.
+         *
+         * @return the result, or null if the index should be used.
+         */
+        @Nullable
+        private ScanResult moveNear(long index) {
+            long from = lastKnownIndex, position = lastKnownPosition;
+            if (from > index || index - from > indexSpacingMask) {
+                from = checkpointIndex;
+                position = checkpointPosition;
+            }
+            RollCycle rollCycle = queue.rollCycle();
+            if (from == Long.MIN_VALUE || from > index || index - from > indexSpacingMask
+                    || rollCycle.toCycle(from) != rollCycle.toCycle(index)
+                    || !(store instanceof SingleChronicleQueueStore))
+                return null;
+            return ((SingleChronicleQueueStore) store).moveToIndexFrom(this,
+                    rollCycle.toSequenceNumber(from), position, rollCycle.toSequenceNumber(index));
+        }
+
+        /**
+         * Moves to index from the positions of its index block, reading the headers of the block
+         * up to index first if they haven't been read, so the block can be read backwards without
+         * a scan for each excerpt.
+         *
+         * @return the result, or null if the index should be used.
+         */
+        @Nullable
+        private ScanResult moveBackward(long index) {
+            Bytes<?> bytes = wire().bytes();
+            if (blockIndex != Long.MIN_VALUE && index >= blockIndex && index < blockIndex + blockCount) {
+                assert blockPositions != null;
+                bytes.readPositionUnlimited(blockPositions[(int) (index - blockIndex)]);
+                return FOUND;
+            }
+
+            RollCycle rollCycle = queue.rollCycle();
+            long start = index & ~indexSpacingMask;
+            if (store.moveToIndexForRead(this, rollCycle.toSequenceNumber(start)) != FOUND)
+                return null;
+            int count = (int) (index - start) + 1;
+            if (blockPositions == null || blockPositions.length < count)
+                blockPositions = new long[indexSpacingMask + 1];
+            blockIndex = Long.MIN_VALUE;
+            try {
+                for (int i = 0; i < count; i++) {
+                    if (!wire().readDataHeader())
+                        return null;
+                    blockPositions[i] = bytes.readPosition();
+                    if (i == count - 1)
+                        break;
+                    int header = bytes.readInt();
+                    if (Wires.isNotComplete(header))
+                        return null;
+                    bytes.readSkip(Wires.lengthOf(header));
+                }
+            } catch (EOFException e) {
+                return null;
+            } finally {
+                if (metrics != null)
+                    metrics.add(QueueMetrics.Counter.LINEAR_SCANS, QueueMetrics.Counter.LINEAR_SCAN_LENGTH, count);
+            }
+            blockIndex = start;
+            blockCount = count;
+            bytes.readPositionUnlimited(blockPositions[count - 1]);
+            return FOUND;
+        }
+
+        private void known(long index, long position) {
+            lastKnownIndex = index;
+            lastKnownPosition = position;
+            if ((index & indexSpacingMask) == 0) {
+                checkpointIndex = index;
+                checkpointPosition = position;
+            }
+        }
+
         @NotNull
         @Override
         public final ExcerptTailer toStart() {
@@ -1237,25 +1885,23 @@ public class SingleChronicleQueueExcerpts {
          * @return the last index at the time this method was called, or Long.MIN_VALUE if none.
          */
 
-        private long approximateLastIndex() {
+        /**
+         * @return the index of the last excerpt written, or Long.MIN_VALUE if there are none.
+         */
+        long approximateLastIndex() {
 
             RollCycle rollCycle = queue.rollCycle();
-            final int lastCycle = queue.lastCycle();
             try {
+                long index = lastWrittenIndex();
+                if (index != Long.MIN_VALUE)
+                    return index;
+
+                final int lastCycle = queue.lastCycle();
                 if (lastCycle == Integer.MIN_VALUE)
                     return Long.MIN_VALUE;
 
-                final WireStore wireStore = queue.storeForCycle(lastCycle, queue.epoch(), false);
-                this.setCycle(lastCycle);
-                assert wireStore != null;
-
-                if (store != null)
-                    queue.release(store);
-
-                if (this.store != wireStore) {
-                    this.store = wireStore;
-                    resetWires();
-                }
+                final boolean found = storeForCycle(lastCycle);
+                assert found;
                 // give the position of the last entry and
                 // flag we want to count it even though we don't know if it will be meta data or not.
 
@@ -1267,6 +1913,59 @@ public class SingleChronicleQueueExcerpts {
             }
         }
 
+        /**
+         * Switches to the store of cycle.
+         *
+         * @return false if there is no store for cycle.
+         */
+        private boolean storeForCycle(int cycle) {
+            final WireStore wireStore = queue.storeForCycle(cycle, queue.epoch(), false);
+            if (wireStore == null)
+                return false;
+            this.setCycle(cycle);
+
+            if (store != null)
+                queue.release(store);
+
+            if (this.store != wireStore) {
+                this.store = wireStore;
+                resetWires();
+            }
+            return true;
+        }
+
+        /**
+         * @return the last index read on from the last excerpt written, if that is recorded,
+         * without listing the cycles or using the index, or Long.MIN_VALUE if it isn't recorded or
+         * is stale.
+         */
+        private long lastWrittenIndex() {
+            LastWritten lastWritten = queue.lastWritten(false);
+            if (lastWritten == null)
+                return Long.MIN_VALUE;
+            RollCycle rollCycle = queue.rollCycle();
+            long index = lastWritten.index();
+            long position = lastWritten.position(index);
+            int cycle = rollCycle.toCycle(index);
+            // stale if this process has seen a later cycle, or the cycle has been deleted.
+            if (position <= 0 || cycle < queue.lastCycle || !storeForCycle(cycle)
+                    || !(store instanceof SingleChronicleQueueStore))
+                return Long.MIN_VALUE;
+            long fromSequenceNumber = rollCycle.toSequenceNumber(index);
+            try {
+                long sequenceNumber = ((SingleChronicleQueueStore) store)
+                        .lastSequenceNumberFrom(this, fromSequenceNumber, position);
+                if (sequenceNumber < fromSequenceNumber)
+                    return Long.MIN_VALUE;
+                // it has been written, so toEnd() can move on from it.
+                known(index, position);
+                return rollCycle.toIndex(cycle, sequenceNumber);
+            } catch (EOFException e) {
+                Jvm.debug().on(getClass(), "Unable to read on from " + Long.toHexString(index) + ", " + e);
+                return Long.MIN_VALUE;
+            }
+        }
+
         private boolean headerNumberCheck(@NotNull AbstractWire wire) {
 
             wire.headNumberCheck((actual, position) -> {
@@ -1460,17 +2159,59 @@ public class SingleChronicleQueueExcerpts {
             final Wire wire = wire();
             wire.parent(this);
             wire.pauser(queue.pauserSupplier.get());
+            unmapped = false;
+            MappedMemoryBudget.INSTANCE.mapped(mapping, queue.mappedSize());
             return true;
         }
 
-        void release() {
+        /**
+         * Releases the stores this tailer holds, so their cycles can be deleted. They are acquired
+         * again by the next read.
+         */
+        public void release() {
+            MappedMemoryBudget.INSTANCE.unmapped(mapping);
             if (store != null) {
                 queue.release(store);
                 store = null;
             }
+            releaseAckStore();
+            unpinCycle();
+            unmapped = false;
             state = UNINITIALISED;
         }
 
+        private void unpinCycle() {
+            if (pinnedCycle != Integer.MIN_VALUE) {
+                queue.unpin(pinnedCycle);
+                pinnedCycle = Integer.MIN_VALUE;
+            }
+        }
+
+        private void releaseAckStore() {
+            if (ackStore != null) {
+                queue.release(ackStore);
+                ackStore = null;
+            }
+            ackCycle = Integer.MIN_VALUE;
+        }
+
+        @NotNull
+        @Override
+        public ExcerptTailer streaming(boolean streaming) {
+            if (streaming && readAhead == null) {
+                readAhead = new ReadAhead(queue);
+            } else if (!streaming && readAhead != null) {
+                readAhead.release();
+                readAhead = null;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean streaming() {
+            return readAhead != null;
+        }
+
         @Override
         public void readAfterReplicaAcknowledged(boolean readAfterReplicaAcknowledged) {
             this.readAfterReplicaAcknowledged = readAfterReplicaAcknowledged;
@@ -1492,94 +2233,162 @@ public class SingleChronicleQueueExcerpts {
         public ExcerptTailer afterLastWritten(@NotNull ChronicleQueue queue) {
             if (queue == this.queue)
                 throw new IllegalArgumentException("You must pass the queue written to, not the queue read");
+            // the appender checkpoints the source of each excerpt written with its history, so
+            // only the last excerpt, which could have been written without its checkpoint being
+            // updated, has to be read. Without a checkpoint the excerpts are scanned backwards.
+            long checkpointIndex = Long.MIN_VALUE, checkpointSourceIndex = Long.MIN_VALUE;
+            SourceCheckpoints checkpoints = queue instanceof SingleChronicleQueue
+                    ? ((SingleChronicleQueue) queue).sourceCheckpoints(false)
+                    : null;
+            if (checkpoints != null) {
+                long slot = checkpoints.find(sourceId());
+                if (slot >= 0) {
+                    checkpointIndex = checkpoints.queueIndex(slot);
+                    checkpointSourceIndex = checkpoints.sourceIndex(slot);
+                }
+            }
+
             ExcerptTailer tailer = queue.createTailer()
                     .direction(BACKWARD)
                     .toEnd();
             StringBuilder sb = new StringBuilder();
             VanillaMessageHistory veh = new VanillaMessageHistory();
             veh.addSourceDetails(false);
+            BinaryMessageHistory binaryHistory = null;
+            if (tailer instanceof StoreTailer && ((StoreTailer) tailer).queue.binaryHistory)
+                ((StoreTailer) tailer).history(binaryHistory = new BinaryMessageHistory());
             while (true) {
                 try (DocumentContext context = tailer.readingDocument()) {
                     if (!context.isData()) {
+                        if (checkpointIndex != Long.MIN_VALUE)
+                            return afterSourceIndex(checkpointSourceIndex, queue);
                         toStart();
                         return this;
                     }
-                    ValueIn valueIn = context.wire().readEventName(sb);
-                    if (!StringUtils.isEqual("history", sb))
-                        continue;
-                    final Wire wire = context.wire();
-                    Object parent = wire.parent();
-                    try {
-                        wire.parent(null);
-                        valueIn.marshallable(veh);
-                    } finally {
-                        wire.parent(parent);
-                    }
-                    int i = veh.sources() - 1;
-                    if (i < 0)
-                        continue;
-                    if (veh.sourceId(i) != this.sourceId())
-                        continue;
-
-                    long sourceIndex = veh.sourceIndex(i);
-                    if (!moveToIndex(sourceIndex)) {
-                        final String errorMessage = String.format("Unable to move to sourceIndex %d, " +
-                                "which was determined to be the last entry written to queue %s", sourceIndex, queue);
-                        throw new IORuntimeException(errorMessage);
-                    }
-                    try (DocumentContext content = readingDocument()) {
-                        if (!content.isPresent()) {
-                            final String errorMessage =
-                                    String.format("No readable document found at sourceIndex %d", (sourceIndex + 1));
-                            throw new IORuntimeException(errorMessage);
-                        }
-                        // skip this message and go to the next.
-                    }
-                    return this;
+                    if (checkpointIndex != Long.MIN_VALUE && context.index() <= checkpointIndex)
+                        return afterSourceIndex(checkpointSourceIndex, queue);
+
+                    long sourceIndex = binaryHistory == null
+                            ? lastSourceIndex(context, sb, veh)
+                            : lastSourceIndex(binaryHistory);
+                    if (sourceIndex != Long.MIN_VALUE)
+                        return afterSourceIndex(Math.max(sourceIndex, checkpointSourceIndex), queue);
+                    if (checkpointIndex != Long.MIN_VALUE)
+                        return afterSourceIndex(checkpointSourceIndex, queue);
                 }
             }
         }
 
-        @UsedViaReflection
-        public void lastAcknowledgedIndexReplicated(long acknowledgeIndex) {
+        /**
+         * @return the index this tailer's source had when the excerpt was written, or {@link
+         * Long#MIN_VALUE} if it wasn't written after reading from this source.
+         */
+        private long lastSourceIndex(@NotNull DocumentContext context, @NotNull StringBuilder sb,
+                                     @NotNull VanillaMessageHistory veh) {
+            ValueIn valueIn = context.wire().readEventName(sb);
+            if (!StringUtils.isEqual("history", sb))
+                return Long.MIN_VALUE;
+            final Wire wire = context.wire();
+            Object parent = wire.parent();
+            try {
+                wire.parent(null);
+                valueIn.marshallable(veh);
+            } finally {
+                wire.parent(parent);
+            }
+            return lastSourceIndex(veh);
+        }
 
-            Jvm.debug().on(getClass(), "received lastAcknowledgedIndexReplicated=" + Long.toHexString(acknowledgeIndex) + " ,file=" + queue().file().getAbsolutePath());
+        private long lastSourceIndex(@NotNull MessageHistory history) {
+            int i = history.sources() - 1;
+            if (i < 0 || history.sourceId(i) != this.sourceId())
+                return Long.MIN_VALUE;
+            return history.sourceIndex(i);
+        }
 
-            // the reason that we use the temp tailer is to prevent this tailer from having its cycle changed
-            StoreTailer temp = null;
-            try {
-                temp = queue.acquireTailer();
-                RollCycle rollCycle = queue.rollCycle();
-                int cycle0 = rollCycle.toCycle(acknowledgeIndex);
+        @NotNull
+        private ExcerptTailer afterSourceIndex(long sourceIndex, @NotNull ChronicleQueue queue) {
+            if (!moveToIndex(sourceIndex)) {
+                final String errorMessage = String.format("Unable to move to sourceIndex %d, " +
+                        "which was determined to be the last entry written to queue %s", sourceIndex, queue);
+                throw new IORuntimeException(errorMessage);
+            }
+            try (DocumentContext content = readingDocument()) {
+                if (!content.isPresent()) {
+                    final String errorMessage =
+                            String.format("No readable document found at sourceIndex %d", (sourceIndex + 1));
+                    throw new IORuntimeException(errorMessage);
+                }
+                // skip this message and go to the next.
+            }
+            return this;
+        }
+
+        /**
+         * Records that all excerpts up to and including {@code acknowledgeIndex} have been
+         * replicated. Acknowledgements are expected to be monotonic, so any which are not newer
+         * than the last one seen are coalesced away. The store of the acknowledged cycle is held
+         * until an acknowledgement arrives for another cycle, so no store is acquired per ack.
+         */
+        @UsedViaReflection
+        public void lastAcknowledgedIndexReplicated(long acknowledgeIndex) {
+            if (acknowledgeIndex <= lastAckIndex)
+                return;
 
-                if (!temp.cycle(cycle0, false)) {
+            int cycle0 = queue.rollCycle().toCycle(acknowledgeIndex);
+            if (ackStore == null || cycle0 != ackCycle) {
+                WireStore next = queue.storeForCycle(cycle0, queue.epoch(), false);
+                if (next == null) {
                     Jvm.warn().on(getClass(), "Got an acknowledge index " + Long.toHexString(acknowledgeIndex) + " for a cycle which could not found");
                     return;
                 }
-
-                if (temp.store == null) {
-                    Jvm.warn().on(getClass(), "Got an acknowledge index " + Long.toHexString(acknowledgeIndex) + " discarded.");
-                    return;
+                // the new index is past every index in the cycles since the last one acknowledged,
+                // so readers waiting on those cycles can drain them.
+                int fromCycle = ackCycle;
+                if (ackStore != null) {
+                    ackStore.lastAcknowledgedIndexReplicated(acknowledgeIndex);
+                    fromCycle++;
                 }
-                temp.store.lastAcknowledgedIndexReplicated(acknowledgeIndex);
-            } finally {
-                if (temp != null) {
-                    temp.release();
+                if (fromCycle != Integer.MIN_VALUE && fromCycle < cycle0)
+                    acknowledgeCycles(fromCycle, cycle0 - 1, acknowledgeIndex);
+                releaseAckStore();
+                ackStore = next;
+                ackCycle = cycle0;
+            }
+            ackStore.lastAcknowledgedIndexReplicated(acknowledgeIndex);
+            lastAckIndex = acknowledgeIndex;
+        }
+
+        /**
+         * Records acknowledgeIndex in each cycle from fromCycle to toCycle inclusive.
+         */
+        private void acknowledgeCycles(int fromCycle, int toCycle, long acknowledgeIndex) {
+            for (int cycle : queue.cyclesBetween(fromCycle, toCycle)) {
+                WireStore store = queue.storeForCycle(cycle, queue.epoch(), false);
+                if (store == null)
+                    continue;
+                try {
+                    store.lastAcknowledgedIndexReplicated(acknowledgeIndex);
+                } finally {
+                    queue.release(store);
                 }
             }
         }
 
         public long lastAcknowledgedIndexReplicated() throws EOFException {
-            // the reason that we use the temp tailer is to prevent this tailer from having its cycle changed
-            StoreTailer temp = null;
+            int lastCycle = queue.lastCycle();
+            if (lastCycle == Integer.MIN_VALUE)
+                return -1;
+            if (ackStore != null && ackCycle == lastCycle)
+                return ackStore.lastAcknowledgedIndexReplicated();
+
+            WireStore wireStore = queue.storeForCycle(lastCycle, queue.epoch(), false);
+            if (wireStore == null)
+                return -1;
             try {
-                temp = queue.acquireTailer();
-                temp.toEnd();
-                return temp.store.lastAcknowledgedIndexReplicated();
+                return wireStore.lastAcknowledgedIndexReplicated();
             } finally {
-                if (temp != null) {
-                    temp.release();
-                }
+                queue.release(wireStore);
             }
         }
 
@@ -1587,7 +2396,7 @@ public class SingleChronicleQueueExcerpts {
             this.cycle = cycle;
 
             timeForNextCycle = cycle == Integer.MIN_VALUE ? Long.MAX_VALUE :
-                    (long) (cycle + 1) * queue.rollCycle().length() + queue.epoch();
+                    ((long) (cycle >> queue.rollCycle().subCycleBits()) + 1) * queue.rollCycle().length() + queue.epoch();
 
         }
 
@@ -1608,8 +2417,13 @@ public class SingleChronicleQueueExcerpts {
 
             @Override
             public void close() {
-                if (isPresent())
+                if (isPresent()) {
                     incrementIndex();
+                    if (metricsSlot >= 0 && !isMetaData())
+                        metrics.tailerIndex(metricsSlot, index);
+                    if (positions != null && ++unpersisted >= persistEvery)
+                        persistPosition();
+                }
 
                 super.close();
                 // assert wire == null || wire.endUse();
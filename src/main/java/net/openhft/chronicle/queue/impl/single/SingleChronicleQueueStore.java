@@ -71,7 +71,7 @@ public class SingleChronicleQueueStore implements WireStore {
      * @param wire a wire
      */
     @UsedViaReflection
-    private SingleChronicleQueueStore(@NotNull WireIn wire) {
+    SingleChronicleQueueStore(@NotNull WireIn wire) {
         assert wire.startUse();
         try {
             this.wireType = wire.read(MetaDataField.wireType).object(WireType.class);
@@ -246,6 +246,31 @@ public class SingleChronicleQueueStore implements WireStore {
         }
     }
 
+    /**
+     * Moves to sequenceNumber by reading the headers from an excerpt whose position is known,
+     * rather than looking it up in the index.
+     */
+    @NotNull
+    ScanResult moveToIndexFrom(@NotNull ExcerptContext ec, long fromSequenceNumber, long fromPosition, long sequenceNumber) {
+        return indexing.linearScan(ec, ec.wire(), sequenceNumber, fromSequenceNumber, fromPosition);
+    }
+
+    /**
+     * Finds the last sequence number by reading the headers from an excerpt whose position is
+     * known, rather than looking it up in the index.
+     */
+    long lastSequenceNumberFrom(@NotNull ExcerptContext ec, long fromSequenceNumber, long fromPosition) throws EOFException {
+        return indexing.linearScanByPosition(ec.wireForIndex(), Long.MAX_VALUE, fromSequenceNumber, fromPosition, false);
+    }
+
+    /**
+     * @return the sequence number of the excerpt at position, counted on from the excerpt at
+     * fromPosition, without the index.
+     */
+    long sequenceForPositionFrom(@NotNull ExcerptContext ec, long position, long fromSequenceNumber, long fromPosition) throws EOFException {
+        return indexing.linearScanByPosition(ec.wireForIndex(), position, fromSequenceNumber, fromPosition, true);
+    }
+
     @Override
     public void reserve() throws IllegalStateException {
         this.refCount.reserve();
@@ -317,6 +342,11 @@ public class SingleChronicleQueueStore implements WireStore {
 
     @Override
     public void writeMarshallable(@NotNull WireOut wire) {
+        writeFields(wire);
+        wire.padToCacheAlign();
+    }
+
+    void writeFields(@NotNull WireOut wire) {
         if (lastAcknowledgedIndexReplicated == null)
             lastAcknowledgedIndexReplicated = wire.newLongReference();
 
@@ -328,7 +358,6 @@ public class SingleChronicleQueueStore implements WireStore {
                 .int64forBinding(-1L, lastAcknowledgedIndexReplicated);
         wire.write(MetaDataField.recovery).typedMarshallable(recovery);
         wire.write(MetaDataField.deltaCheckpointInterval).int32(this.deltaCheckpointInterval);
-        wire.padToCacheAlign();
     }
 
     @Override
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.MappedFile;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.Closeable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A small file beside the cycle files which records, for each source id, the last source index
+ * consumed and the index of the excerpt in this queue it was recorded in, so {@code
+ * afterLastWritten} doesn't have to scan back through the history of every excerpt.
+ * <p>
+ * Each source has a slot of {@code [source id + 1: 4 bytes][padding: 4 bytes][source index: 8
+ * bytes][queue index: 8 bytes][padding: 8 bytes]}. The source index is written before the queue
+ * index, so a reader which sees a queue index sees a source index at least as recent.
+ */
+class SourceCheckpoints implements Closeable {
+    static final String FILE_NAME = "source-checkpoints.cq4t";
+    static final long NO_INDEX = Long.MIN_VALUE;
+    private static final int SLOT_SIZE = 32;
+    private static final int SLOTS = 256;
+    private static final int SOURCE_INDEX = 8, QUEUE_INDEX = 16;
+
+    @NotNull
+    private final MappedFile mappedFile;
+    @NotNull
+    private final BytesStore store;
+    private volatile boolean closed = false;
+
+    private SourceCheckpoints(@NotNull MappedFile mappedFile) throws IOException {
+        this.mappedFile = mappedFile;
+        this.store = mappedFile.acquireByteStore(0);
+    }
+
+    /**
+     * @return the checkpoints of the queue in dir, or null if there are none and create is false.
+     */
+    @Nullable
+    static SourceCheckpoints open(@NotNull File dir, boolean create) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!create && !file.exists())
+            return null;
+        return new SourceCheckpoints(MappedFile.mappedFile(file, OS.pageAlign(SLOTS * SLOT_SIZE)));
+    }
+
+    /**
+     * Records that the excerpt at queueIndex was written after reading sourceIndex from sourceId.
+     * Neither index goes backwards.
+     */
+    void checkpoint(int sourceId, long sourceIndex, long queueIndex) {
+        long offset = slot(sourceId, true);
+        if (offset < 0)
+            return;
+        max(offset + SOURCE_INDEX, sourceIndex);
+        max(offset + QUEUE_INDEX, queueIndex);
+    }
+
+    /**
+     * @return the offset of the slot for sourceId, or -1 if there isn't one.
+     */
+    long find(int sourceId) {
+        return slot(sourceId, false);
+    }
+
+    long queueIndex(long slot) {
+        return store.readVolatileLong(slot + QUEUE_INDEX);
+    }
+
+    long sourceIndex(long slot) {
+        return store.readVolatileLong(slot + SOURCE_INDEX);
+    }
+
+    private long slot(int sourceId, boolean claim) {
+        int key = sourceId + 1;
+        int start = (sourceId & Integer.MAX_VALUE) % SLOTS;
+        for (int i = 0; i < SLOTS; i++) {
+            long offset = (long) ((start + i) % SLOTS) * SLOT_SIZE;
+            int found = store.readVolatileInt(offset);
+            if (found == key)
+                return offset;
+            if (found != 0)
+                continue;
+            if (!claim)
+                return -1;
+            // claim an empty slot, indices first so readers never see a claimed slot without them.
+            if (store.compareAndSwapLong(offset + SOURCE_INDEX, 0, NO_INDEX)) {
+                store.writeOrderedLong(offset + QUEUE_INDEX, NO_INDEX);
+                store.writeOrderedInt(offset, key);
+                return offset;
+            }
+            // another writer is claiming this slot, wait for its key.
+            for (int j = 0; j < 1000 && (found = store.readVolatileInt(offset)) == 0; j++)
+                Thread.yield();
+            if (found == key)
+                return offset;
+        }
+        return -1;
+    }
+
+    private void max(long offset, long value) {
+        for (; ; ) {
+            long current = store.readVolatileLong(offset);
+            if (current >= value || store.compareAndSwapLong(offset, current, value))
+                return;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        store.release();
+        mappedFile.release();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.MappedFile;
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.Closeable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A small file beside the cycle files which records the next index to be read by each named
+ * tailer, so a tailer created with the same name carries on where the last one stopped.
+ * <p>
+ * Each name has a slot of {@code [state: 4 bytes][name length: 4 bytes][name: 48 bytes][index: 8
+ * bytes]}. A slot is claimed once and never freed.
+ */
+class TailerPositions implements Closeable {
+    static final String FILE_NAME = "tailer-positions.cq4t";
+    static final long NO_INDEX = Long.MIN_VALUE;
+    static final int MAX_NAME_LENGTH = 48;
+    private static final int SLOT_SIZE = 64;
+    private static final int SLOTS = 256;
+    private static final int NAME_LENGTH = 4, NAME = 8, INDEX = 56;
+    private static final int EMPTY = 0, CLAIMED = 1, REGISTERED = 2;
+
+    @NotNull
+    private final MappedFile mappedFile;
+    @NotNull
+    private final BytesStore store;
+    private volatile boolean closed = false;
+
+    private TailerPositions(@NotNull MappedFile mappedFile) throws IOException {
+        this.mappedFile = mappedFile;
+        this.store = mappedFile.acquireByteStore(0);
+    }
+
+    /**
+     * @return the positions of the queue in dir, or null if there are none and create is false.
+     */
+    @Nullable
+    static TailerPositions open(@NotNull File dir, boolean create) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!create && !file.exists())
+            return null;
+        return new TailerPositions(MappedFile.mappedFile(file, OS.pageAlign(SLOTS * SLOT_SIZE)));
+    }
+
+    /**
+     * @return the offset of the slot for name, or -1 if there isn't one and claim is false, or all
+     * the slots are taken.
+     */
+    long slot(@NotNull String name, boolean claim) {
+        if (name.length() > MAX_NAME_LENGTH)
+            throw new IllegalArgumentException("The name of a tailer can be at most " + MAX_NAME_LENGTH + " characters, was " + name);
+        int start = (name.hashCode() & Integer.MAX_VALUE) % SLOTS;
+        for (int i = 0; i < SLOTS; i++) {
+            long offset = (long) ((start + i) % SLOTS) * SLOT_SIZE;
+            int state = store.readVolatileInt(offset);
+            if (state == CLAIMED) {
+                // another tailer is registering this slot, wait for its name.
+                for (int j = 0; j < 1000 && (state = store.readVolatileInt(offset)) == CLAIMED; j++)
+                    Thread.yield();
+            }
+            if (state == REGISTERED) {
+                if (nameEquals(offset, name))
+                    return offset;
+                continue;
+            }
+            if (state != EMPTY || !claim)
+                continue;
+            if (!store.compareAndSwapInt(offset, EMPTY, CLAIMED)) {
+                // lost the race for this slot, look at it again.
+                i--;
+                continue;
+            }
+            store.writeOrderedLong(offset + INDEX, NO_INDEX);
+            for (int j = 0; j < name.length(); j++)
+                store.writeByte(offset + NAME + j, (byte) name.charAt(j));
+            store.writeInt(offset + NAME_LENGTH, name.length());
+            store.writeOrderedInt(offset, REGISTERED);
+            return offset;
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(long offset, @NotNull String name) {
+        if (store.readInt(offset + NAME_LENGTH) != name.length())
+            return false;
+        for (int j = 0; j < name.length(); j++)
+            if (store.readByte(offset + NAME + j) != (byte) name.charAt(j))
+                return false;
+        return true;
+    }
+
+    /**
+     * @return the next index to be read by the tailer in slot, or {@link #NO_INDEX} if it hasn't
+     * read anything.
+     */
+    long index(long slot) {
+        return store.readVolatileLong(slot + INDEX);
+    }
+
+    void index(long slot, long index) {
+        store.writeOrderedLong(slot + INDEX, index);
+    }
+
+    /**
+     * @return the lowest index any named tailer will read next, or {@link #NO_INDEX} if none have
+     * read anything.
+     */
+    long lowestIndex() {
+        long lowest = NO_INDEX;
+        for (int i = 0; i < SLOTS; i++) {
+            long offset = (long) i * SLOT_SIZE;
+            if (store.readVolatileInt(offset) != REGISTERED)
+                continue;
+            long index = index(offset);
+            if (index != NO_INDEX && (lowest == NO_INDEX || index < lowest))
+                lowest = index;
+        }
+        return lowest;
+    }
+
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        store.release();
+        mappedFile.release();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -23,6 +23,7 @@ import net.openhft.chronicle.core.Jvm;
 import net.openhft.chronicle.core.annotation.UsedViaReflection;
 import net.openhft.chronicle.core.values.LongArrayValues;
 import net.openhft.chronicle.core.values.LongValue;
+import net.openhft.chronicle.queue.impl.ExcerptContext;
 import net.openhft.chronicle.wire.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -127,6 +128,8 @@ public class TimedStoreRecovery extends AbstractMarshallable implements StoreRec
     @Override
     public long recoverAndWriteHeader(@NotNull Wire wire, int length, long timeoutMS, final LongValue lastPosition) throws UnrecoverableTimeoutException, EOFException {
         Bytes<?> bytes = wire.bytes();
+        if (wire.parent() instanceof ExcerptContext)
+            SCQIndexing.recovered((ExcerptContext) wire.parent());
         while (true) {
             long offset = bytes.writePosition();
             int num = bytes.readInt(offset);
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.openhft.chronicle.queue.replication;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.Jvm;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The wire format shared by {@link ReplicationSource} and {@link ReplicationSink}.
+ * <p>
+ * On connect the sink sends the last index it holds, or {@link #NO_INDEX}, and whether its queue
+ * has {@code binaryHistory}, as {@link #BINARY_HISTORY} or 0. The source answers {@link #ACCEPTED},
+ * or {@link #REJECTED} if it can't replicate to the sink, which then stops. The source then sends
+ * frames of
+ * {@code [index: 8 bytes][length: 4 bytes][excerpt: length bytes]} and the sink answers each batch
+ * of frames with the last index it has written. The excerpts are sent as they are in the file, with
+ * any history record they start with, so both queues have to agree on {@code binaryHistory}.
+ */
+final class ReplicationProtocol {
+    static final long NO_INDEX = Long.MIN_VALUE;
+    static final long BINARY_HISTORY = 1;
+    static final long ACCEPTED = 0;
+    static final long REJECTED = -1;
+    static final long CLOSE_TIMEOUT_MS = 2_000;
+    static final int HEADER_SIZE = 8 + 4;
+    static final int BUFFER_SIZE = 4 << 20;
+    static final int FLUSH_SIZE = 64 << 10;
+    // excerpts at least this large are sent on their own, and received into the mapped file a
+    // buffer at a time, so they don't have to fit in the buffers.
+    static final int LARGE_SIZE = 4 << 10;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeLong(@NotNull SocketChannel channel, @NotNull Bytes<ByteBuffer> bytes, long value) throws IOException {
+        bytes.clear();
+        bytes.writeLong(value);
+        ByteBuffer bb = bytes.underlyingObject();
+        bb.limit(8);
+        bb.position(0);
+        while (bb.hasRemaining())
+            channel.write(bb);
+    }
+
+    static long readLong(@NotNull SocketChannel channel, @NotNull Bytes<ByteBuffer> bytes) throws IOException {
+        ByteBuffer bb = bytes.underlyingObject();
+        bb.limit(8);
+        bb.position(0);
+        while (bb.hasRemaining())
+            if (channel.read(bb) < 0)
+                throw new EOFException("Connection closed by peer");
+        bytes.readPositionRemaining(0, 8);
+        return bytes.readLong();
+    }
+
+    /**
+     * Waits for the replication thread to stop, so it doesn't use the queue once it is closed.
+     */
+    static void awaitTermination(@NotNull ExecutorService service, @NotNull Class<?> type) {
+        try {
+            if (!service.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                Jvm.warn().on(type, "Replication thread still running after " + CLOSE_TIMEOUT_MS + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the start of the buffer.
+     */
+    static void compact(@NotNull Bytes<?> bytes) {
+        long start = bytes.readPosition();
+        if (start == 0)
+            return;
+        long remaining = bytes.readRemaining();
+        if (remaining > 0)
+            bytes.write(0, bytes, start, remaining);
+        bytes.readPositionRemaining(0, remaining);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.openhft.chronicle.queue.replication;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.queue.BinaryMessageHistory;
+import net.openhft.chronicle.queue.TailerDirection;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueExcerpts.InternalAppender;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueExcerpts.StoreTailer;
+import net.openhft.chronicle.threads.NamedThreadFactory;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static net.openhft.chronicle.queue.replication.ReplicationProtocol.*;
+
+/**
+ * Connects to a {@link ReplicationSource} and writes the excerpts it sends to a mirror queue at
+ * the same indices, acknowledging each batch once it has been written. Large excerpts are read
+ * into the mapped file a buffer at a time. The excerpts keep the history records they were written
+ * with, with the time of writing to the mirror added, so the mirror has to have the same {@code
+ * binaryHistory} as the source, which the source checks on connect. The sink resumes from the last index in the mirror and reconnects if the
+ * connection is lost, unless the source rejected it, as it would again.
+ */
+public class ReplicationSink implements Closeable {
+    private static final int RECONNECT_MS = 100;
+    @NotNull
+    private final SingleChronicleQueue queue;
+    @NotNull
+    private final InetSocketAddress address;
+    private volatile boolean closed = false;
+    @Nullable
+    private volatile SocketChannel channel;
+    private volatile long lastIndexWritten = NO_INDEX;
+    @NotNull
+    private final ExecutorService service;
+
+    public ReplicationSink(@NotNull SingleChronicleQueue queue, @NotNull InetSocketAddress address) {
+        this.queue = queue;
+        this.address = address;
+
+        service = Executors.newSingleThreadExecutor(
+                new NamedThreadFactory(queue.file().getName() + "-ReplicationSink", true));
+        service.execute(this::runLoop);
+        service.shutdown(); // stop when the task exits.
+    }
+
+    /**
+     * @return the last index written to the mirror, or {@link Long#MIN_VALUE} if none has been.
+     */
+    public long lastIndexWritten() {
+        return lastIndexWritten;
+    }
+
+    void runLoop() {
+        Bytes<ByteBuffer> in = Bytes.elasticByteBuffer(BUFFER_SIZE);
+        Bytes<ByteBuffer> out = Bytes.elasticByteBuffer(8);
+        try {
+            while (!closed) {
+                try (SocketChannel channel = SocketChannel.open(address)) {
+                    this.channel = channel;
+                    channel.socket().setTcpNoDelay(true);
+                    if (!replicate(channel, in, out)) {
+                        Jvm.warn().on(getClass(), "Rejected by the source at " + address + ", not reconnecting");
+                        break;
+                    }
+                } catch (IOException e) {
+                    if (closed)
+                        break;
+                    Jvm.warn().on(getClass(), "Replication from " + address + " stopped, reconnecting", e);
+                    Jvm.pause(RECONNECT_MS);
+                }
+                in.clear();
+            }
+        } catch (Throwable t) {
+            if (!closed)
+                Jvm.warn().on(getClass(), "Run loop exited", t);
+        } finally {
+            in.release();
+            out.release();
+        }
+    }
+
+    /**
+     * @return false if the source rejected the sink, otherwise replicates until closed.
+     */
+    private boolean replicate(@NotNull SocketChannel channel, @NotNull Bytes<ByteBuffer> in,
+                              @NotNull Bytes<ByteBuffer> out) throws IOException {
+        InternalAppender appender = (InternalAppender) queue.acquireAppender();
+        writeLong(channel, out, lastIndex());
+        writeLong(channel, out, queue.binaryHistory() ? BINARY_HISTORY : 0);
+        boolean accepted = readLong(channel, in) == ACCEPTED;
+        in.clear();
+        if (!accepted)
+            return false;
+
+        ByteBuffer bb = in.underlyingObject();
+        while (!closed) {
+            bb.limit(bb.capacity());
+            bb.position((int) in.writePosition());
+            if (channel.read(bb) < 0)
+                throw new EOFException("Source closed the connection");
+            in.writePosition(bb.position());
+
+            long lastIndex = NO_INDEX;
+            while (in.readRemaining() >= HEADER_SIZE) {
+                long start = in.readPosition();
+                long index = in.readLong(start);
+                int length = in.readInt(start + 8);
+                long end = start + HEADER_SIZE + length;
+                if (in.readLimit() < end) {
+                    // a large excerpt is received in place once its history record has been.
+                    if (length < LARGE_SIZE || in.readLimit() < start + HEADER_SIZE + BinaryMessageHistory.MAX_LENGTH)
+                        break;
+                    in.readPosition(start + HEADER_SIZE);
+                    receiveLarge(channel, appender, index, length, in);
+                    lastIndex = index;
+                    break;
+                }
+
+                long limit = in.readLimit();
+                in.readLimit(end);
+                in.readPosition(start + HEADER_SIZE);
+                if (queue.binaryHistory())
+                    readHistory(index, in);
+                appender.writeBytes(index, in);
+                in.readLimit(limit);
+                in.readPosition(end);
+                lastIndex = index;
+            }
+            compact(in);
+
+            if (lastIndex != NO_INDEX) {
+                lastIndexWritten = lastIndex;
+                writeLong(channel, out, lastIndex);
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of a large excerpt from the socket into the space reserved for it in the
+     * mapped file, a buffer at a time, or discards it if the index already exists. The reservation
+     * is given up if the excerpt can't be read in full.
+     */
+    private void receiveLarge(@NotNull SocketChannel channel, @NotNull InternalAppender appender, long index,
+                              int length, @NotNull Bytes<ByteBuffer> in) throws IOException {
+        if (queue.binaryHistory())
+            length -= readHistory(index, in);
+        Bytes<?> reserved = appender.reserveBytes(index, length);
+        boolean committed = false;
+        try {
+            long remaining = length - in.readRemaining();
+            if (reserved != null)
+                reserved.write(in, in.readPosition(), in.readRemaining());
+            in.clear();
+
+            ByteBuffer bb = in.underlyingObject();
+            while (remaining > 0) {
+                bb.position(0);
+                bb.limit((int) Math.min(remaining, bb.capacity()));
+                while (bb.hasRemaining())
+                    if (channel.read(bb) < 0)
+                        throw new EOFException("Source closed the connection");
+                in.readPositionRemaining(0, bb.position());
+                if (reserved != null)
+                    reserved.write(in);
+                remaining -= bb.position();
+            }
+            in.clear();
+            if (reserved != null)
+                appender.commitBytes();
+            committed = true;
+        } finally {
+            if (reserved != null && !committed)
+                appender.abortBytes();
+        }
+    }
+
+    /**
+     * Reads the history record the excerpt at index starts with into the history of this thread,
+     * which the appender writes it with.
+     *
+     * @return the length of the record.
+     */
+    private static int readHistory(long index, @NotNull Bytes<?> in) throws StreamCorruptedException {
+        BinaryMessageHistory history = BinaryMessageHistory.get();
+        if (!history.readFrom(in))
+            throw new StreamCorruptedException("No history record at the start of excerpt " + Long.toHexString(index));
+        return history.readLength();
+    }
+
+    private long lastIndex() {
+        StoreTailer tailer = (StoreTailer) queue.createTailer();
+        try (DocumentContext dc = tailer.direction(TailerDirection.BACKWARD).toEnd().readingDocument()) {
+            return dc.isPresent() ? dc.index() : NO_INDEX;
+        } finally {
+            tailer.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        SocketChannel channel = this.channel;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Jvm.debug().on(getClass(), e);
+            }
+        }
+        awaitTermination(service, getClass());
+    }
+}
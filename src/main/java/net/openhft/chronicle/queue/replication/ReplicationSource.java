@@ -0,0 +1,300 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.openhft.chronicle.queue.replication;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.queue.BinaryMessageHistory;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.impl.single.DirectBufferCopy;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueExcerpts.StoreTailer;
+import net.openhft.chronicle.threads.LongPauser;
+import net.openhft.chronicle.threads.NamedThreadFactory;
+import net.openhft.chronicle.threads.Pauser;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static net.openhft.chronicle.queue.replication.ReplicationProtocol.*;
+
+/**
+ * Streams the excerpts of a queue to one {@link ReplicationSink} at a time. Small excerpts are
+ * batched, large ones are sent on their own. Each excerpt is sent with its index, and with its
+ * history record if the queue has {@code binaryHistory}, so the sink can preserve them. When the
+ * socket is full the source backs off, reading acknowledgements while it waits. The
+ * acknowledgements sent back by the sink
+ * are recorded with {@link StoreTailer#lastAcknowledgedIndexReplicated(long)}, so tailers in
+ * {@code readAfterReplicaAcknowledged} mode only see replicated excerpts.
+ */
+public class ReplicationSource implements Closeable {
+    @NotNull
+    private final SingleChronicleQueue queue;
+    @NotNull
+    private final ServerSocketChannel server;
+    private volatile boolean closed = false;
+    private volatile long lastAcknowledgedIndex = NO_INDEX;
+    // only used by the replication thread.
+    private final DirectBufferCopy copy = new DirectBufferCopy();
+    private final ByteBuffer[] buffers = new ByteBuffer[2];
+    // where the tailer reads history records to, so they can be sent with the excerpts.
+    private final BinaryMessageHistory history = new BinaryMessageHistory();
+    private final Pauser writePauser = new LongPauser(0, 100, 50, 2_000, TimeUnit.MICROSECONDS);
+    @NotNull
+    private final ExecutorService service;
+
+    public ReplicationSource(@NotNull SingleChronicleQueue queue, @NotNull InetSocketAddress address) throws IOException {
+        this.queue = queue;
+        this.server = ServerSocketChannel.open();
+        server.socket().setReuseAddress(true);
+        server.bind(address);
+
+        service = Executors.newSingleThreadExecutor(
+                new NamedThreadFactory(queue.file().getName() + "-ReplicationSource", true));
+        service.execute(this::runLoop);
+        service.shutdown(); // stop when the task exits.
+    }
+
+    /**
+     * @return the address the source is listening on, useful when bound to port 0.
+     */
+    @NotNull
+    public InetSocketAddress address() {
+        return (InetSocketAddress) server.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * @return the last index acknowledged by a sink, or {@link Long#MIN_VALUE} if none has been.
+     */
+    public long lastAcknowledgedIndex() {
+        return lastAcknowledgedIndex;
+    }
+
+    void runLoop() {
+        Bytes<ByteBuffer> out = Bytes.elasticByteBuffer(BUFFER_SIZE);
+        Bytes<ByteBuffer> in = Bytes.elasticByteBuffer(FLUSH_SIZE);
+        StoreTailer ackTailer = (StoreTailer) queue.createTailer();
+        try {
+            while (!closed) {
+                try (SocketChannel channel = server.accept()) {
+                    channel.socket().setTcpNoDelay(true);
+                    replicate(channel, out, in, ackTailer);
+                } catch (IOException e) {
+                    if (!closed)
+                        Jvm.warn().on(getClass(), "Replication to sink stopped", e);
+                }
+                out.clear();
+                in.clear();
+            }
+        } catch (Throwable t) {
+            if (!closed)
+                Jvm.warn().on(getClass(), "Run loop exited", t);
+        } finally {
+            out.release();
+            in.release();
+            copy.release();
+            ackTailer.release();
+        }
+    }
+
+    private void replicate(@NotNull SocketChannel channel, @NotNull Bytes<ByteBuffer> out,
+                           @NotNull Bytes<ByteBuffer> in, @NotNull StoreTailer ackTailer) throws IOException {
+        StoreTailer tailer = (StoreTailer) queue.createTailer();
+        try {
+            tailer.history(history);
+            if (accept(channel, out, in, tailer))
+                replicate(channel, out, in, ackTailer, tailer);
+        } finally {
+            tailer.release();
+        }
+    }
+
+    /**
+     * Reads where the sink is up to, and answers whether it can be replicated to.
+     */
+    private boolean accept(@NotNull SocketChannel channel, @NotNull Bytes<ByteBuffer> out,
+                           @NotNull Bytes<ByteBuffer> in, @NotNull StoreTailer tailer) throws IOException {
+        long sinkLastIndex = readLong(channel, in);
+        boolean sinkBinaryHistory = readLong(channel, in) == BINARY_HISTORY;
+        in.clear();
+        boolean accepted = true;
+        if (sinkBinaryHistory != queue.binaryHistory()) {
+            Jvm.warn().on(getClass(), "Sink has binaryHistory=" + sinkBinaryHistory +
+                    " but " + queue.file() + " has binaryHistory=" + queue.binaryHistory());
+            accepted = false;
+        } else if (sinkLastIndex != NO_INDEX && !skipTo(tailer, sinkLastIndex)) {
+            Jvm.warn().on(getClass(), "Sink has index " + Long.toHexString(sinkLastIndex) +
+                    " which is not in " + queue.file());
+            accepted = false;
+        }
+        writeLong(channel, out, accepted ? ACCEPTED : REJECTED);
+        out.clear();
+        return accepted;
+    }
+
+    private void replicate(@NotNull SocketChannel channel, @NotNull Bytes<ByteBuffer> out, @NotNull Bytes<ByteBuffer> in,
+                           @NotNull StoreTailer ackTailer, @NotNull StoreTailer tailer) throws IOException {
+        channel.configureBlocking(false);
+        Pauser pauser = new LongPauser(1_000, 200, 250, 20_000, TimeUnit.MICROSECONDS);
+        while (!closed) {
+            boolean busy = false;
+            while (out.writePosition() < FLUSH_SIZE) {
+                try (DocumentContext dc = tailer.readingDocument()) {
+                    if (!dc.isPresent())
+                        break;
+                    send(channel, dc, out, in, ackTailer);
+                    busy = true;
+                }
+            }
+            if (out.writePosition() > 0)
+                flush(channel, out, in, ackTailer);
+            busy |= readAcks(channel, in, ackTailer);
+
+            if (busy)
+                pauser.reset();
+            else
+                pauser.pause();
+        }
+    }
+
+    private void send(@NotNull SocketChannel channel, @NotNull DocumentContext dc, @NotNull Bytes<ByteBuffer> out,
+                      @NotNull Bytes<ByteBuffer> in, @NotNull StoreTailer ackTailer) throws IOException {
+        Bytes<?> bytes = dc.wire().bytes();
+        // send the history record the tailer skipped, if there is one.
+        long start = bytes.readPosition() - (queue.binaryHistory() ? history.readLength() : 0);
+        long length = bytes.readLimit() - start;
+        // large excerpts are sent on their own, smaller ones are cheaper to batch than to send one
+        // by one.
+        ByteBuffer excerpt = null;
+        if (length >= LARGE_SIZE) {
+            long position = bytes.readPosition();
+            bytes.readPosition(start);
+            excerpt = copy.forRead(bytes);
+            bytes.readPosition(position);
+        }
+        if (excerpt != null || out.writePosition() + HEADER_SIZE + length > BUFFER_SIZE) {
+            if (excerpt == null && out.writePosition() == 0)
+                throw new IllegalStateException("Excerpt of " + length +
+                        " bytes is larger than the replication buffer");
+            flush(channel, out, in, ackTailer);
+        }
+
+        out.writeLong(dc.index());
+        out.writeInt((int) length);
+        if (excerpt == null) {
+            out.write(bytes, start, length);
+            return;
+        }
+
+        ByteBuffer header = out.underlyingObject();
+        header.limit(HEADER_SIZE);
+        header.position(0);
+        buffers[0] = header;
+        buffers[1] = excerpt;
+        while (excerpt.hasRemaining()) {
+            if (channel.write(buffers) == 0)
+                waitToWrite(channel, in, ackTailer);
+            else
+                writePauser.reset();
+        }
+        out.clear();
+    }
+
+    private static boolean skipTo(@NotNull ExcerptTailer tailer, long sinkLastIndex) {
+        if (!tailer.moveToIndex(sinkLastIndex))
+            return false;
+        try (DocumentContext dc = tailer.readingDocument()) {
+            // the sink already has this excerpt.
+            return dc.isPresent();
+        }
+    }
+
+    private void flush(@NotNull SocketChannel channel, @NotNull Bytes<ByteBuffer> out,
+                       @NotNull Bytes<ByteBuffer> in, @NotNull StoreTailer ackTailer) throws IOException {
+        ByteBuffer bb = out.underlyingObject();
+        bb.limit((int) out.writePosition());
+        bb.position(0);
+        while (bb.hasRemaining()) {
+            if (channel.write(bb) == 0)
+                waitToWrite(channel, in, ackTailer);
+            else
+                writePauser.reset();
+        }
+        out.clear();
+    }
+
+    /**
+     * Called when the socket is full, so the sink is behind. Reads its acknowledgements, or backs
+     * off if there are none.
+     */
+    private void waitToWrite(@NotNull SocketChannel channel, @NotNull Bytes<ByteBuffer> in,
+                             @NotNull StoreTailer ackTailer) throws IOException {
+        if (closed)
+            throw new ClosedChannelException();
+        if (readAcks(channel, in, ackTailer))
+            writePauser.reset();
+        else
+            writePauser.pause();
+    }
+
+    private boolean readAcks(@NotNull SocketChannel channel, @NotNull Bytes<ByteBuffer> in,
+                             @NotNull StoreTailer ackTailer) throws IOException {
+        ByteBuffer bb = in.underlyingObject();
+        bb.limit(bb.capacity());
+        bb.position((int) in.writePosition());
+        int read = channel.read(bb);
+        if (read < 0)
+            throw new EOFException("Sink closed the connection");
+        if (read == 0)
+            return false;
+        in.writePosition(bb.position());
+
+        // only the latest acknowledgement matters.
+        long ack = NO_INDEX;
+        while (in.readRemaining() >= 8)
+            ack = in.readLong();
+        compact(in);
+        if (ack != NO_INDEX) {
+            ackTailer.lastAcknowledgedIndexReplicated(ack);
+            lastAcknowledgedIndex = ack;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            Jvm.debug().on(getClass(), e);
+        }
+        awaitTermination(service, getClass());
+    }
+}
@@ -51,15 +51,15 @@ public class EventLoopServiceWrapper<O> implements ServiceWrapper, EventHandler
 
     public EventLoopServiceWrapper(@NotNull ServiceWrapperBuilder<O> builder) {
         this.priority = builder.priority();
-        outputQueue = SingleChronicleQueueBuilder.binary(builder.outputPath()).testBlockSize().sourceId(builder.outputSourceId()).build();
-        serviceOut = outputQueue.acquireAppender().methodWriterBuilder(builder.outClass()).recordHistory(builder.outputSourceId() != 0).get();
+        outputQueue = SingleChronicleQueueBuilder.binary(builder.outputPath()).testBlockSize().binaryHistory(builder.binaryHistory()).sourceId(builder.outputSourceId()).build();
+        serviceOut = outputQueue.acquireAppender().methodWriterBuilder(builder.outClass()).recordHistory(builder.outputSourceId() != 0 && !builder.binaryHistory()).get();
         serviceImpl = builder.getServiceFunctions().stream().map(f -> f.apply(serviceOut)).toArray();
 
         List<String> paths = builder.inputPath();
         serviceIn = new MethodReader[paths.size()];
         inputQueues = new ChronicleQueue[paths.size()];
         for (int i = 0; i < paths.size(); i++) {
-            inputQueues[i] = SingleChronicleQueueBuilder.binary(paths.get(i)).sourceId(builder.inputSourceId()).build();
+            inputQueues[i] = SingleChronicleQueueBuilder.binary(paths.get(i)).binaryHistory(builder.binaryHistory()).sourceId(builder.inputSourceId()).build();
             serviceIn[i] = inputQueues[i].createTailer().afterLastWritten(outputQueue).methodReader(serviceImpl);
         }
         eventLoop = builder.eventLoop();
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue.service;
+
+import net.openhft.chronicle.wire.WireOut;
+import net.openhft.chronicle.wire.WriteMarshallable;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The latency percentiles, in microseconds, of the messages traced by a {@link LatencyTracer}. Hop
+ * {@code n} is the time between the {@code n}th and {@code n+1}th timings of a message's history,
+ * so the even hops are spent in queues and the odd ones in services.
+ */
+public class LatencySnapshot implements WriteMarshallable {
+    static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 0.9999, 1.0};
+    private static final String[] NAMES = {"50", "90", "99", "99.9", "99.99", "worst"};
+
+    private final long count;
+    @NotNull
+    private final double[] endToEnd;
+    @NotNull
+    private final double[][] hops;
+
+    LatencySnapshot(long count, @NotNull double[] endToEnd, @NotNull double[][] hops) {
+        this.count = count;
+        this.endToEnd = endToEnd;
+        this.hops = hops;
+    }
+
+    /**
+     * @return the percentiles reported, from 0.5 up to 1.0 for the worst.
+     */
+    @NotNull
+    public static double[] percentiles() {
+        return PERCENTILES.clone();
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return the latency, from being first written to being read by the tracer, at each of the
+     * {@link #percentiles()}.
+     */
+    @NotNull
+    public double[] endToEnd() {
+        return endToEnd.clone();
+    }
+
+    public int hops() {
+        return hops.length;
+    }
+
+    @NotNull
+    public double[] hop(int hop) {
+        return hops[hop].clone();
+    }
+
+    @Override
+    public void writeMarshallable(@NotNull WireOut wire) {
+        wire.write(() -> "count").int64(count);
+        wire.write(() -> "endToEnd").marshallable(w -> writePercentiles(w, endToEnd));
+        for (int i = 0; i < hops.length; i++) {
+            String name = "hop" + i;
+            double[] hop = hops[i];
+            wire.write(() -> name).marshallable(w -> writePercentiles(w, hop));
+        }
+    }
+
+    private static void writePercentiles(@NotNull WireOut wire, @NotNull double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            String name = NAMES[i];
+            wire.write(() -> name).float64(values[i]);
+        }
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("LatencySnapshot{count=").append(count);
+        sb.append(", endToEnd=");
+        append(sb, endToEnd);
+        for (int i = 0; i < hops.length; i++) {
+            sb.append(", hop").append(i).append('=');
+            append(sb, hops[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void append(@NotNull StringBuilder sb, @NotNull double[] values) {
+        sb.append("{");
+        for (int i = 0; i < values.length; i++)
+            sb.append(i == 0 ? "" : ", ").append(NAMES[i]).append(": ").append(values[i]);
+        sb.append("}");
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue.service;
+
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.threads.EventHandler;
+import net.openhft.chronicle.core.threads.HandlerPriority;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import net.openhft.chronicle.core.util.Histogram;
+import net.openhft.chronicle.core.util.StringUtils;
+import net.openhft.chronicle.queue.BinaryMessageHistory;
+import net.openhft.chronicle.queue.ChronicleQueue;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.wire.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails the output queues at the end of a chain of services and builds histograms of the latency
+ * of each hop, and end to end, from the timings in the history of each message. The timings are
+ * {@link System#nanoTime()}s so the services have to run on one host.
+ * <p>
+ * The tracer can be added to an event loop, or polled with {@link #action()}. The latencies are
+ * read with {@link #snapshot()}, and can also be written to a metrics queue periodically.
+ */
+public class LatencyTracer implements EventHandler, Closeable {
+    private static final int MAX_PER_ACTION = 128;
+
+    @NotNull
+    private final ExcerptTailer[] tailers;
+    @NotNull
+    private final boolean[] binaryHistory;
+    private final Histogram endToEnd = new Histogram();
+    private final List<Histogram> hops = new ArrayList<>();
+    private final StringBuilder sb = new StringBuilder();
+    private final VanillaMessageHistory veh = new VanillaMessageHistory();
+    private long count;
+    @Nullable
+    private ExcerptAppender metricsAppender;
+    private long reportIntervalNS;
+    private long nextReport;
+    private volatile boolean closed;
+
+    /**
+     * Traces the messages written to the queues from now on.
+     */
+    public LatencyTracer(@NotNull ChronicleQueue... queues) {
+        tailers = new ExcerptTailer[queues.length];
+        binaryHistory = new boolean[queues.length];
+        for (int i = 0; i < queues.length; i++) {
+            tailers[i] = queues[i].createTailer().toEnd();
+            binaryHistory[i] = queues[i] instanceof SingleChronicleQueue
+                    && ((SingleChronicleQueue) queues[i]).binaryHistory();
+        }
+        veh.addSourceDetails(false);
+    }
+
+    @NotNull
+    public static LatencyTracer forService(@NotNull ServiceWrapper serviceWrapper) {
+        return new LatencyTracer(serviceWrapper.outputQueues());
+    }
+
+    /**
+     * Writes a {@link LatencySnapshot} to {@code metrics} every {@code interval}, as a document
+     * with a {@code latency} field.
+     *
+     * @return this
+     */
+    @NotNull
+    public LatencyTracer reportTo(@NotNull ChronicleQueue metrics, long interval, @NotNull TimeUnit unit) {
+        metricsAppender = metrics.acquireAppender();
+        reportIntervalNS = unit.toNanos(interval);
+        nextReport = System.nanoTime() + reportIntervalNS;
+        return this;
+    }
+
+    @Override
+    public boolean action() throws InvalidEventHandlerException {
+        if (closed)
+            throw new InvalidEventHandlerException();
+
+        boolean busy = false;
+        for (int i = 0; i < tailers.length; i++) {
+            for (int j = 0; j < MAX_PER_ACTION && readOne(i); j++)
+                busy = true;
+        }
+
+        if (metricsAppender != null) {
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                nextReport = now + reportIntervalNS;
+                LatencySnapshot snapshot = snapshot();
+                metricsAppender.writeDocument(w -> w.write(() -> "latency").marshallable(snapshot));
+            }
+        }
+        return busy;
+    }
+
+    private boolean readOne(int i) {
+        try (DocumentContext dc = tailers[i].readingDocument()) {
+            if (!dc.isPresent())
+                return false;
+            if (!dc.isData())
+                return true;
+            if (binaryHistory[i]) {
+                // the tailer has added the time it was read.
+                sample(BinaryMessageHistory.get(), Long.MIN_VALUE);
+            } else {
+                long now = System.nanoTime();
+                MessageHistory history = readHistory(dc.wire());
+                if (history != null)
+                    sample(history, now);
+            }
+            return true;
+        }
+    }
+
+    @Nullable
+    private MessageHistory readHistory(@NotNull Wire wire) {
+        ValueIn valueIn = wire.readEventName(sb);
+        if (!StringUtils.isEqual("history", sb))
+            return null;
+        Object parent = wire.parent();
+        try {
+            wire.parent(null);
+            veh.reset();
+            valueIn.marshallable(veh);
+        } finally {
+            wire.parent(parent);
+        }
+        return veh;
+    }
+
+    /**
+     * @param readTime the time the message was read, if not already in its history.
+     */
+    private synchronized void sample(@NotNull MessageHistory history, long readTime) {
+        int timings = history.timings();
+        if (timings == 0 || timings == 1 && readTime == Long.MIN_VALUE)
+            return;
+        long first = history.timing(0), previous = first;
+        for (int i = 1; i < timings; i++) {
+            long timing = history.timing(i);
+            hop(i - 1).sample(timing - previous);
+            previous = timing;
+        }
+        if (readTime != Long.MIN_VALUE) {
+            hop(timings - 1).sample(readTime - previous);
+            previous = readTime;
+        }
+        endToEnd.sample(previous - first);
+        count++;
+    }
+
+    @NotNull
+    private Histogram hop(int hop) {
+        while (hops.size() <= hop)
+            hops.add(new Histogram());
+        return hops.get(hop);
+    }
+
+    /**
+     * @return the latencies of the messages traced since the tracer was created or reset.
+     */
+    @NotNull
+    public synchronized LatencySnapshot snapshot() {
+        double[][] hopPercentiles = new double[hops.size()][];
+        for (int i = 0; i < hopPercentiles.length; i++)
+            hopPercentiles[i] = percentiles(hops.get(i));
+        return new LatencySnapshot(count, percentiles(endToEnd), hopPercentiles);
+    }
+
+    @NotNull
+    private double[] percentiles(@NotNull Histogram histogram) {
+        double[] percentiles = new double[LatencySnapshot.PERCENTILES.length];
+        if (histogram.totalCount() == 0)
+            return percentiles;
+        for (int i = 0; i < percentiles.length; i++)
+            percentiles[i] = histogram.percentile(LatencySnapshot.PERCENTILES[i]) / 1e3;
+        return percentiles;
+    }
+
+    /**
+     * Clears the latencies, e.g. after warming up.
+     */
+    public synchronized void reset() {
+        endToEnd.reset();
+        for (Histogram hop : hops)
+            hop.reset();
+        count = 0;
+    }
+
+    @NotNull
+    @Override
+    public HandlerPriority priority() {
+        return HandlerPriority.MONITOR;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
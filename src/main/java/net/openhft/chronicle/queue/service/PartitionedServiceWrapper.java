@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package net.openhft.chronicle.queue.service;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.io.Closeable;
+import net.openhft.chronicle.core.threads.EventHandler;
+import net.openhft.chronicle.core.threads.EventLoop;
+import net.openhft.chronicle.core.threads.HandlerPriority;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import net.openhft.chronicle.core.util.StringUtils;
+import net.openhft.chronicle.queue.ChronicleQueue;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.threads.EventGroup;
+import net.openhft.chronicle.wire.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Runs a service as a number of partitions, each with its own handler, service instances and
+ * output queue. Every partition reads all the input queues but only processes the messages the
+ * {@link ServicePartitioner} routes to it, so messages with the same key are processed in order.
+ * Each partition resumes after the last message it wrote to its own output queue.
+ * <p>
+ * The output is only ordered within each partition's queue, so replies to the same key are in
+ * order but there is no single output queue ordering the replies of every partition.
+ * <p>
+ * Unless an event loop is given, each partition runs on an event loop of its own.
+ */
+public class PartitionedServiceWrapper<O> implements ServiceWrapper {
+    @NotNull
+    private final Partition[] partitions;
+    @NotNull
+    private final ChronicleQueue[] outputQueues;
+    @Nullable
+    private final EventLoop[] createdEventLoops;
+    private volatile boolean closed = false;
+
+    public PartitionedServiceWrapper(@NotNull ServiceWrapperBuilder<O> builder) {
+        int count = builder.partitions();
+        partitions = new Partition[count];
+        outputQueues = new ChronicleQueue[count];
+        createdEventLoops = builder.eventLoop() == null ? new EventLoop[count] : null;
+        for (int p = 0; p < count; p++) {
+            partitions[p] = new Partition(builder, p);
+            outputQueues[p] = partitions[p].outputQueue;
+        }
+        for (int p = 0; p < count; p++) {
+            if (createdEventLoops == null) {
+                builder.eventLoop().addHandler(partitions[p]);
+            } else {
+                EventLoop eventLoop = createdEventLoops[p] = new EventGroup(false);
+                eventLoop.addHandler(partitions[p]);
+                eventLoop.start();
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public ChronicleQueue[] inputQueues() {
+        return partitions[0].inputQueues;
+    }
+
+    /**
+     * @throws UnsupportedOperationException as each partition has an output queue, see {@link
+     *                                       #outputQueues()}
+     */
+    @NotNull
+    @Override
+    public ChronicleQueue outputQueue() {
+        throw new UnsupportedOperationException("Each partition has an output queue, see outputQueues()");
+    }
+
+    @NotNull
+    @Override
+    public ChronicleQueue[] outputQueues() {
+        return outputQueues;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (createdEventLoops != null)
+            Closeable.closeQuietly(createdEventLoops);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    class Partition implements EventHandler {
+        @NotNull
+        final ChronicleQueue[] inputQueues;
+        @NotNull
+        final ChronicleQueue outputQueue;
+        @NotNull
+        private final MethodReader[] serviceIn;
+        private final Object[] serviceImpl;
+        private final HandlerPriority priority;
+
+        Partition(@NotNull ServiceWrapperBuilder<O> builder, int partition) {
+            priority = builder.priority();
+            outputQueue = SingleChronicleQueueBuilder.binary(builder.outputPath(partition)).testBlockSize().binaryHistory(builder.binaryHistory()).sourceId(builder.outputSourceId()).build();
+            O serviceOut = outputQueue.acquireAppender().methodWriterBuilder(builder.outClass()).recordHistory(builder.outputSourceId() != 0 && !builder.binaryHistory()).get();
+            serviceImpl = builder.getServiceFunctions().stream().map(f -> f.apply(serviceOut)).toArray();
+
+            List<String> paths = builder.inputPath();
+            serviceIn = new MethodReader[paths.size()];
+            inputQueues = new ChronicleQueue[paths.size()];
+            for (int i = 0; i < paths.size(); i++) {
+                inputQueues[i] = SingleChronicleQueueBuilder.binary(paths.get(i)).binaryHistory(builder.binaryHistory()).sourceId(builder.inputSourceId()).build();
+                ExcerptTailer tailer = inputQueues[i].createTailer().afterLastWritten(outputQueue);
+                serviceIn[i] = new PartitionIn(tailer, builder.partitioner(), partition, builder.partitions())
+                        .methodReader(serviceImpl);
+            }
+        }
+
+        @Override
+        public boolean action() throws InvalidEventHandlerException {
+            if (isClosed()) {
+                Closeable.closeQuietly(serviceImpl);
+                Closeable.closeQuietly(serviceIn);
+                Closeable.closeQuietly(outputQueue);
+                Closeable.closeQuietly(inputQueues);
+                throw new InvalidEventHandlerException();
+            }
+
+            boolean busy = false;
+            for (MethodReader reader : serviceIn) {
+                busy |= reader.readOne();
+            }
+            return busy;
+        }
+
+        @NotNull
+        @Override
+        public HandlerPriority priority() {
+            return priority;
+        }
+    }
+
+    /**
+     * Reads the messages of one partition, skipping the rest.
+     */
+    static class PartitionIn implements MarshallableIn {
+        @NotNull
+        private final ExcerptTailer tailer;
+        @NotNull
+        private final ServicePartitioner partitioner;
+        private final int partition;
+        private final int partitions;
+        private final StringBuilder sb = new StringBuilder();
+        private final VanillaMessageHistory history = new VanillaMessageHistory();
+
+        PartitionIn(@NotNull ExcerptTailer tailer, @NotNull ServicePartitioner partitioner, int partition, int partitions) {
+            this.tailer = tailer;
+            this.partitioner = partitioner;
+            this.partition = partition;
+            this.partitions = partitions;
+        }
+
+        @NotNull
+        @Override
+        public DocumentContext readingDocument() {
+            while (true) {
+                DocumentContext dc = tailer.readingDocument();
+                if (!dc.isData())
+                    return dc;
+                Bytes<?> bytes = dc.wire().bytes();
+                long position = bytes.readPosition();
+                skipHistory(dc.wire(), position);
+                long key = partitioner.key(dc.index(), dc.wire());
+                bytes.readPosition(position);
+                if (ServicePartitioner.partition(key, partitions) == partition)
+                    return dc;
+                dc.close();
+            }
+        }
+
+        /**
+         * Moves past the history the method writer records before the method call, if any.
+         */
+        private void skipHistory(@NotNull Wire wire, long position) {
+            ValueIn valueIn = wire.readEventName(sb);
+            if (!StringUtils.isEqual("history", sb)) {
+                wire.bytes().readPosition(position);
+                return;
+            }
+            Object parent = wire.parent();
+            try {
+                wire.parent(null);
+                history.reset();
+                valueIn.marshallable(history);
+            } finally {
+                wire.parent(parent);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package net.openhft.chronicle.queue.service;
+
+import net.openhft.chronicle.wire.Wire;
+
+/**
+ * Chooses the partition of a {@link PartitionedServiceWrapper} which processes each input message.
+ * Messages with the same key are processed by the same partition, in order.
+ */
+@FunctionalInterface
+public interface ServicePartitioner {
+    /**
+     * Spreads messages over the partitions in turn, for stateless services.
+     */
+    ServicePartitioner BY_INDEX = (index, wire) -> index;
+
+    /**
+     * @param index the index of the message in the input queue
+     * @param wire  the message, after any history recorded by the method writer, which can be
+     *              read as the read position is restored afterwards
+     * @return the key of the message
+     */
+    long key(long index, Wire wire);
+
+    static int partition(long key, int partitions) {
+        return (int) Math.floorMod(key, (long) partitions);
+    }
+}
@@ -27,4 +27,8 @@ public interface ServiceWrapper extends Closeable {
     ChronicleQueue[] inputQueues();
 
     ChronicleQueue outputQueue();
+
+    default ChronicleQueue[] outputQueues() {
+        return new ChronicleQueue[]{outputQueue()};
+    }
 }
@@ -25,6 +25,7 @@ import net.openhft.chronicle.threads.EventGroup;
 import net.openhft.chronicle.wire.MethodReader;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
@@ -43,6 +44,10 @@ public class ServiceWrapperBuilder<O> implements Supplier<ServiceWrapper> {
     private boolean createdEventLoop = false;
     private int inputSourceId;
     private int outputSourceId;
+    private int partitions = 1;
+    private boolean binaryHistory = false;
+    @NotNull
+    private ServicePartitioner partitioner = ServicePartitioner.BY_INDEX;
 
     ServiceWrapperBuilder() {
     }
@@ -82,6 +87,13 @@ public class ServiceWrapperBuilder<O> implements Supplier<ServiceWrapper> {
         return outputPath;
     }
 
+    /**
+     * @return the output queue of a partition, when there is more than one.
+     */
+    public String outputPath(int partition) {
+        return partitions == 1 ? outputPath : new File(outputPath, "partition-" + partition).getPath();
+    }
+
     @NotNull
     public ServiceWrapperBuilder<O> outputPath(String outputPath) {
         this.outputPath = outputPath;
@@ -141,9 +153,57 @@ public class ServiceWrapperBuilder<O> implements Supplier<ServiceWrapper> {
         return this;
     }
 
+    public int partitions() {
+        return partitions;
+    }
+
+    /**
+     * @param partitions the number of partitions to process the input with, each writing to its
+     *                   own output queue under the output path. The replies are ordered within
+     *                   each partition's queue only; they aren't merged back into one ordered
+     *                   output queue.
+     * @return this
+     */
+    @NotNull
+    public ServiceWrapperBuilder<O> partitions(int partitions) {
+        if (partitions < 1)
+            throw new IllegalArgumentException("partitions=" + partitions);
+        this.partitions = partitions;
+        return this;
+    }
+
+    @NotNull
+    public ServicePartitioner partitioner() {
+        return partitioner;
+    }
+
+    @NotNull
+    public ServiceWrapperBuilder<O> partitioner(@NotNull ServicePartitioner partitioner) {
+        this.partitioner = partitioner;
+        return this;
+    }
+
+    public boolean binaryHistory() {
+        return binaryHistory;
+    }
+
+    /**
+     * @param binaryHistory whether the queues record the history of each message as a {@link
+     *                      net.openhft.chronicle.queue.BinaryMessageHistory} record rather than
+     *                      with the method writers.
+     * @return this
+     */
+    @NotNull
+    public ServiceWrapperBuilder<O> binaryHistory(boolean binaryHistory) {
+        this.binaryHistory = binaryHistory;
+        return this;
+    }
+
     @NotNull
     @Override
     public ServiceWrapper get() {
+        if (partitions > 1)
+            return new PartitionedServiceWrapper<>(this);
         if (eventLoop == null) {
             eventLoop = new EventGroup(false);
             createdEventLoop = true;
@@ -153,12 +213,17 @@ public class ServiceWrapperBuilder<O> implements Supplier<ServiceWrapper> {
 
     @NotNull
     public SingleChronicleQueue inputQueue() {
-        return SingleChronicleQueueBuilder.binary(inputPaths.get(0)).testBlockSize().sourceId(inputSourceId()).build();
+        return SingleChronicleQueueBuilder.binary(inputPaths.get(0)).testBlockSize().binaryHistory(binaryHistory).sourceId(inputSourceId()).build();
     }
 
     @NotNull
     public SingleChronicleQueue outputQueue() {
-        return SingleChronicleQueueBuilder.binary(outputPath).testBlockSize().sourceId(outputSourceId()).build();
+        return SingleChronicleQueueBuilder.binary(outputPath).testBlockSize().binaryHistory(binaryHistory).sourceId(outputSourceId()).build();
+    }
+
+    @NotNull
+    public SingleChronicleQueue outputQueue(int partition) {
+        return SingleChronicleQueueBuilder.binary(outputPath(partition)).testBlockSize().binaryHistory(binaryHistory).sourceId(outputSourceId()).build();
     }
 
     @NotNull
@@ -169,9 +234,17 @@ public class ServiceWrapperBuilder<O> implements Supplier<ServiceWrapper> {
         return reader;
     }
 
+    @NotNull
+    public MethodReader partitionOutputReader(int partition, Object... impls) {
+        SingleChronicleQueue queue = outputQueue(partition);
+        MethodReader reader = queue.createTailer().methodReader(impls);
+        reader.closeIn(true);
+        return reader;
+    }
+
     @NotNull
     public <T> T inputWriter(Class<T> tClass) {
         SingleChronicleQueue queue = inputQueue();
-        return queue.acquireAppender().methodWriterBuilder(tClass).recordHistory(true).onClose(queue).get();
+        return queue.acquireAppender().methodWriterBuilder(tClass).recordHistory(!binaryHistory).onClose(queue).get();
     }
 }
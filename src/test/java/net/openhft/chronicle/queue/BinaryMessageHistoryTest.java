@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueExcerpts.InternalAppender;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class BinaryMessageHistoryTest {
+    @NotNull
+    private static SingleChronicleQueue queue(@NotNull File dir, int sourceId) {
+        return SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .binaryHistory(true)
+                .sourceId(sourceId)
+                .build();
+    }
+
+    @Before
+    public void resetHistory() {
+        BinaryMessageHistory.get().reset();
+    }
+
+    @Test
+    public void shouldWriteAndReadARecord() {
+        BinaryMessageHistory history = new BinaryMessageHistory();
+        history.addSource(1, 0x100);
+        history.addSource(2, 0x200);
+        history.addTiming(10);
+
+        Bytes<?> bytes = Bytes.elasticByteBuffer();
+        try {
+            history.writeTo(bytes, 20);
+            assertEquals(history.writeLength(), bytes.readRemaining());
+            bytes.writeUtf8("payload");
+
+            BinaryMessageHistory read = new BinaryMessageHistory();
+            assertTrue(read.readFrom(bytes));
+            assertEquals(2, read.sources());
+            assertEquals(2, read.sourceId(1));
+            assertEquals(0x200, read.sourceIndex(1));
+            assertEquals(2, read.timings());
+            assertEquals(10, read.timing(0));
+            assertEquals(20, read.timing(1));
+            assertEquals("payload", bytes.readUtf8());
+
+            // no record, the bytes are left unread.
+            bytes.clear();
+            bytes.writeUtf8("payload");
+            assertFalse(read.readFrom(bytes));
+            assertEquals(0, read.sources());
+            assertEquals("payload", bytes.readUtf8());
+        } finally {
+            bytes.release();
+        }
+    }
+
+    @Test
+    public void shouldRecordEachHop() {
+        try (SingleChronicleQueue in = queue(DirectoryUtils.tempDir("binary-history-in"), 1);
+             SingleChronicleQueue out = queue(DirectoryUtils.tempDir("binary-history-out"), 2)) {
+            in.acquireAppender().writeText("hello");
+            in.acquireAppender().writeBytes(Bytes.from("world"));
+
+            ExcerptTailer inTailer = in.createTailer();
+            ExcerptTailer outTailer = out.createTailer();
+            ExcerptAppender outAppender = out.acquireAppender();
+            BinaryMessageHistory history = BinaryMessageHistory.get();
+
+            assertEquals("hello", inTailer.readText());
+            long firstIndex = inTailer.index() - 1;
+            assertEquals(1, history.sources());
+            assertEquals(1, history.sourceId(0));
+            assertEquals(firstIndex, history.sourceIndex(0));
+            // written and read
+            assertEquals(2, history.timings());
+            assertTrue(history.timing(0) <= history.timing(1));
+
+            outAppender.writeText("hello out");
+            assertEquals("hello out", outTailer.readText());
+            assertEquals(2, history.sources());
+            assertEquals(1, history.sourceId(0));
+            assertEquals(firstIndex, history.sourceIndex(0));
+            assertEquals(2, history.sourceId(1));
+            assertEquals(4, history.timings());
+
+            Bytes<?> bytes = Bytes.elasticByteBuffer();
+            try {
+                assertTrue(inTailer.readBytes(bytes));
+                assertEquals("world", bytes.toString());
+                assertEquals(firstIndex + 1, history.sourceIndex(0));
+            } finally {
+                bytes.release();
+            }
+            outAppender.writeText("world out");
+
+            // restarting after the last message processed, found from the output's history.
+            resetHistory();
+            ExcerptTailer restarted = in.createTailer().afterLastWritten(out);
+            assertEquals(firstIndex + 2, restarted.index());
+        }
+    }
+
+    @Test
+    public void shouldNotMistakeAMessageForARecord() {
+        try (SingleChronicleQueue queue = queue(DirectoryUtils.tempDir("binary-history-magic"), 1)) {
+            ExcerptAppender appender = queue.acquireAppender();
+            appender.writeBytes(lookingLikeARecord());
+            // as replication and imports write them.
+            ((InternalAppender) appender).writeBytes(appender.lastIndexAppended() + 1, lookingLikeARecord());
+
+            ExcerptTailer tailer = queue.createTailer();
+            Bytes<?> bytes = Bytes.elasticByteBuffer();
+            try {
+                for (int i = 0; i < 2; i++) {
+                    bytes.clear();
+                    assertTrue(tailer.readBytes(bytes));
+                    assertEquals(BinaryMessageHistory.MAGIC, bytes.readShort());
+                    assertEquals(0, bytes.readUnsignedByte());
+                    assertEquals(0, bytes.readUnsignedByte());
+                    assertEquals("payload", bytes.toString());
+                    assertEquals(1, BinaryMessageHistory.get().sources());
+                }
+            } finally {
+                bytes.release();
+            }
+        }
+    }
+
+    // a message which starts with the magic and a valid empty record.
+    @NotNull
+    private static Bytes<?> lookingLikeARecord() {
+        Bytes<?> bytes = Bytes.elasticByteBuffer();
+        bytes.writeShort(BinaryMessageHistory.MAGIC);
+        bytes.writeUnsignedByte(0);
+        bytes.writeUnsignedByte(0);
+        bytes.append("payload");
+        return bytes;
+    }
+}
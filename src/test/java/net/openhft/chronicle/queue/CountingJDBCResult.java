@@ -54,6 +54,11 @@ class CountingJDBCResult implements JDBCResult {
         updates.incrementAndGet();
     }
 
+    @Override
+    public void updateBatchResult(long count, int updates, String update) {
+        this.updates.addAndGet(updates);
+    }
+
     @Override
     public void updateThrown(Throwable t, String update, Object... args) {
         throw Jvm.rethrow(t);
@@ -29,8 +29,12 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+
 import static net.openhft.chronicle.queue.RollCycles.TEST_DAILY;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 /**
@@ -95,6 +99,60 @@ public class CreateAtIndexTest {
         }
     }
 
+    @Test
+    public void testReserveBytesWithIndex() throws Exception {
+        String tmp = OS.TARGET + "/" + getClass().getSimpleName() + "-" + System.nanoTime();
+        try (SingleChronicleQueue queue = ChronicleQueueBuilder.single(tmp)
+                .testBlockSize()
+                .rollCycle(TEST_DAILY)
+                .build()) {
+            InternalAppender appender = (InternalAppender) queue.acquireAppender();
+
+            Bytes<?> reserved = appender.reserveBytes(0x421d00000000L, 11);
+            assertNotNull(reserved);
+            assertEquals(11, reserved.writeRemaining());
+            reserved.write("hello world".getBytes(StandardCharsets.ISO_8859_1));
+            appender.commitBytes();
+
+            reserved = appender.reserveBytes(0x421d00000001L, 11);
+            assertNotNull(reserved);
+            reserved.append8bit("hello again");
+            appender.commitBytes();
+
+            // already exists
+            assertNull(appender.reserveBytes(0x421d00000000L, 11));
+
+            // given up part way through, so it can be reserved again
+            reserved = appender.reserveBytes(0x421d00000002L, 11);
+            assertNotNull(reserved);
+            reserved.append8bit("partial");
+            appender.abortBytes();
+            reserved = appender.reserveBytes(0x421d00000002L, 11);
+            assertNotNull(reserved);
+            reserved.append8bit("hello after");
+            appender.commitBytes();
+
+            ExcerptTailer tailer = queue.createTailer();
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertEquals(0x421d00000000L, dc.index());
+                assertEquals("hello world", dc.wire().bytes().toString());
+            }
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertEquals(0x421d00000001L, dc.index());
+                assertEquals("hello again", dc.wire().bytes().toString());
+            }
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertEquals(0x421d00000002L, dc.index());
+                assertEquals("hello after", dc.wire().bytes().toString());
+            }
+        }
+
+        try {
+            IOTools.deleteDirWithFiles(tmp, 2);
+        } catch (IORuntimeException ignored) {
+        }
+    }
+
     @Test
     public void testWrittenAndReadIndexesAreTheSameOfTheFirstExcerpt() throws Exception {
         String tmp = OS.TARGET + "/" + getClass().getSimpleName() + "-" + System.nanoTime();
@@ -29,26 +29,40 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
-import java.sql.DriverManager;
-import java.sql.SQLException;
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 /**
  * Created by peter on 08/04/16.
  */
 public class JDBCServiceTest {
     @Test
     public void testCreateTable() throws SQLException, IOException {
-        doCreateTable(4, 5000);
+        doCreateTable(4, 5000, 1);
+    }
+
+    @Test
+    public void testCreateTableBatched() throws SQLException, IOException {
+        doCreateTable(4, 5000, 100);
     }
 
     @Test
     @Ignore("Long running")
     public void perfCreateTable() throws SQLException, IOException {
-        doCreateTable(5, 200000);
+        doCreateTable(5, 200000, 1);
+    }
+
+    @Test
+    @Ignore("Long running")
+    public void perfCreateTableBatched() throws SQLException, IOException {
+        doCreateTable(5, 200000, 1000);
     }
 
-    public void doCreateTable(int repeats, int noUpdates) throws SQLException {
+    public void doCreateTable(int repeats, int noUpdates, int batchSize) throws SQLException {
         for (int t = 0; t < repeats; t++) {
             long start = System.nanoTime(), written;
             File path1 = DirectoryUtils.tempDir("createTable1");
@@ -65,7 +79,9 @@ public class JDBCServiceTest {
                          .testBlockSize()
                          .build()) {
 
-                JDBCService service = new JDBCService(in, out, () -> DriverManager.getConnection("jdbc:hsqldb:file:" + file.getAbsolutePath(), "SA", ""));
+                String url = "jdbc:hsqldb:file:" + file.getAbsolutePath();
+                JDBCService service = new JDBCService(in, out, () -> DriverManager.getConnection(url, "SA", ""),
+                        batchSize, 10, TimeUnit.MILLISECONDS);
 
                 JDBCStatement writer = service.createWriter();
                 writer.executeUpdate("CREATE TABLE tableName (\n" +
@@ -91,6 +107,14 @@ public class JDBCServiceTest {
                 }
                 Closeable.closeQuietly(service);
 
+                // every insert was committed.
+                try (Connection connection = DriverManager.getConnection(url, "SA", "");
+                     Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM tableName")) {
+                    assertTrue(resultSet.next());
+                    assertEquals(noUpdates - 1, resultSet.getLong(1));
+                }
+
 //            System.out.println(in.dump());
 //            System.out.println(out.dump());
 
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.openhft.chronicle.queue;
+
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SizeRollCycleTest {
+    @Test
+    public void shouldRollOnExcerptsWithinADay() {
+        SetTimeProvider timeProvider = new SetTimeProvider();
+        timeProvider.currentTimeMillis(TimeUnit.DAYS.toMillis(17000));
+        File dir = DirectoryUtils.tempDir("size-roll-excerpts");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(SizeRollCycle.excerpts(RollCycles.DAILY, 10))
+                .timeProvider(timeProvider)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 25; i++)
+                appender.writeText("day-0-" + i);
+            int firstCycle = queue.cycle();
+            assertEquals(firstCycle + 2, queue.rollCycle().toCycle(appender.lastIndexAppended()));
+            assertEquals(4, queue.rollCycle().toSequenceNumber(appender.lastIndexAppended()));
+            assertArrayEquals(new String[]{"20160718_000.cq4", "20160718_001.cq4", "20160718_002.cq4"}, cycleFiles(dir));
+
+            // a new appender carries on from the last sub cycle.
+            try (SingleChronicleQueue queue2 = SingleChronicleQueueBuilder.binary(dir)
+                    .testBlockSize()
+                    .rollCycle(SizeRollCycle.excerpts(RollCycles.DAILY, 10))
+                    .timeProvider(timeProvider)
+                    .build()) {
+                ExcerptAppender appender2 = queue2.acquireAppender();
+                appender2.writeText("day-0-25");
+                assertEquals(appender.lastIndexAppended() + 1, appender2.lastIndexAppended());
+            }
+
+            timeProvider.currentTimeMillis(timeProvider.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+            appender.writeText("day-1-0");
+            assertEquals(queue.cycle(), queue.rollCycle().toCycle(appender.lastIndexAppended()));
+            assertEquals(0, queue.cycle() & 0xFF);
+
+            ExcerptTailer tailer = queue.createTailer();
+            for (int i = 0; i < 26; i++)
+                assertEquals("day-0-" + i, tailer.readText());
+            assertEquals("day-1-0", tailer.readText());
+            assertNull(tailer.readText());
+
+            assertTrue(tailer.moveToIndex(queue.rollCycle().toIndex(firstCycle + 1, 3)));
+            assertEquals("day-0-13", tailer.readText());
+            tailer.direction(TailerDirection.BACKWARD).toEnd();
+            assertEquals("day-1-0", tailer.readText());
+            assertEquals("day-0-25", tailer.readText());
+        }
+    }
+
+    @Test
+    public void shouldRollOnExcerptsWhenIndexingLazily() {
+        File dir = DirectoryUtils.tempDir("size-roll-lazy");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(SizeRollCycle.excerpts(RollCycles.DAILY, 10))
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender().lazyIndexing(true);
+            for (int i = 0; i < 25; i++)
+                appender.writeText("lazy-" + i);
+            assertEquals(3, cycleFiles(dir).length);
+
+            ExcerptTailer tailer = queue.createTailer();
+            for (int i = 0; i < 25; i++) {
+                assertEquals("lazy-" + i, tailer.readText());
+                assertEquals(i % 10, queue.rollCycle().toSequenceNumber(tailer.index() - 1));
+            }
+            assertNull(tailer.readText());
+        }
+    }
+
+    @Test
+    public void shouldRollOnBytes() {
+        File dir = DirectoryUtils.tempDir("size-roll-bytes");
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        String text = new String(chars);
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(SizeRollCycle.bytes(RollCycles.DAILY, 64 << 10))
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 200; i++)
+                appender.writeText(i + text);
+            assertTrue(cycleFiles(dir).length >= 3);
+
+            ExcerptTailer tailer = queue.createTailer();
+            for (int i = 0; i < 200; i++)
+                assertEquals(i + text, tailer.readText());
+            assertNull(tailer.readText());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCyclesWhichDoNotFitAnIndex() {
+        new SizeRollCycle(RollCycles.TEST_SECONDLY, 8, Long.MAX_VALUE, 10);
+    }
+
+    private static String[] cycleFiles(File dir) {
+        String[] files = dir.list((d, name) -> name.endsWith(SingleChronicleQueue.SUFFIX));
+        assertNotNull(files);
+        Arrays.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl;
+
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.impl.QueueMetrics.Counter;
+import net.openhft.chronicle.queue.impl.QueueMetrics.Gauge;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueExcerpts.StoreTailer;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QueueMetricsTest {
+    @Test
+    public void shouldCountAppendsAndReads() throws Exception {
+        File dir = DirectoryUtils.tempDir("queue-metrics");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .metrics(true)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            List<Long> indices = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                appender.writeText("message-" + i);
+                indices.add(appender.lastIndexAppended());
+            }
+            ExcerptTailer tailer = queue.createTailer();
+            for (int i = 0; i < 10; i++)
+                assertEquals("message-" + i, tailer.readText());
+
+            QueueMetrics metrics = queue.metrics();
+            assertNotNull(metrics);
+            assertEquals(10, metrics.get(Counter.APPENDED));
+            assertEquals(10, metrics.get(Counter.READ));
+            assertTrue(metrics.get(Counter.APPENDED_BYTES) >= 10 * "message-0".length());
+            assertTrue(metrics.get(Counter.READ_BYTES) >= 10 * "message-0".length());
+            assertTrue(metrics.get(Counter.ROLLS) >= 1);
+            assertTrue(metrics.get(Counter.STORE_ACQUIRES) >= 1);
+
+            // an index between the indexed excerpts is found with a linear scan.
+            assertTrue(tailer.moveToIndex(indices.get(5)));
+            assertTrue(metrics.get(Counter.LINEAR_SCANS) >= 1);
+
+            // another process only needs the metrics file.
+            try (QueueMetrics external = QueueMetrics.open(dir, false)) {
+                assertNotNull(external);
+                assertEquals(10, external.get(Counter.APPENDED));
+                assertEquals(10, external.get(Counter.READ));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotCreateMetricsByDefault() throws Exception {
+        File dir = DirectoryUtils.tempDir("queue-no-metrics");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir).testBlockSize().build()) {
+            queue.acquireAppender().writeText("hello");
+            assertNull(queue.metrics());
+            assertNull(QueueMetrics.open(dir, false));
+        }
+    }
+
+    @Test
+    public void shouldAddFromManyThreads() throws Exception {
+        File dir = DirectoryUtils.tempDir("queue-metrics-threads");
+        dir.mkdirs();
+        try (QueueMetrics metrics = QueueMetrics.open(dir, true)) {
+            assertNotNull(metrics);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 10_000; i++)
+                        metrics.increment(Counter.APPENDED);
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads)
+                thread.join();
+            assertEquals(40_000, metrics.get(Counter.APPENDED));
+        }
+    }
+
+    @Test
+    public void shouldRecordTheLagOfMonitoredTailers() throws Exception {
+        File dir = DirectoryUtils.tempDir("queue-metrics-lag");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .metrics(true)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 10; i++)
+                appender.writeText("message-" + i);
+
+            StoreTailer tailer = ((StoreTailer) queue.createTailer()).monitored("reader");
+            for (int i = 0; i < 4; i++)
+                assertEquals("message-" + i, tailer.readText());
+
+            try (QueueMetrics external = QueueMetrics.open(dir, false)) {
+                assertNotNull(external);
+                assertEquals(appender.lastIndexAppended(), external.get(Gauge.LAST_INDEX));
+                assertTrue(external.get(Gauge.WRITE_POSITION) > 0);
+                assertTrue(external.get(Gauge.LAST_ROLL_MS) > 0);
+                assertEquals(0, external.cyclesBehind(0));
+                assertEquals("reader", external.tailerName(0));
+                assertEquals(6, external.lag(0));
+                assertNull(external.tailerName(1));
+            }
+
+            // the same name gets the same slot.
+            assertEquals(0, queue.metrics().registerTailer("reader"));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.threads.EventLoop;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.queue.TailerDirection;
+import net.openhft.chronicle.threads.EventGroup;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ArchiverTest {
+    private final SetTimeProvider timeProvider = new SetTimeProvider();
+    // never started, so the tests decide when to archive.
+    private final EventLoop idle = new EventGroup(true);
+
+    @After
+    public void closeEventLoop() {
+        idle.close();
+    }
+
+    @Test
+    public void shouldReadCyclesFromEitherDirectory() throws Exception {
+        timeProvider.currentTimeMillis(System.currentTimeMillis());
+        File dir = DirectoryUtils.tempDir("archiver-hot");
+        File archive = DirectoryUtils.tempDir("archiver-archive");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(RollCycles.TEST_DAILY)
+                .timeProvider(timeProvider)
+                .eventLoop(idle)
+                .archivePath(archive)
+                .hotCycles(1)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 3; i++) {
+                appender.writeText("day-" + i);
+                timeProvider.currentTimeMillis(timeProvider.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+            }
+            int firstCycle = queue.firstCycle();
+
+            Archiver archiver = new Archiver(queue);
+            // two copied and deleted.
+            assertEquals(4, archiver.archive());
+            assertEquals(0, archiver.archive());
+            assertEquals(1, cycleFiles(dir).length);
+            assertEquals(2, cycleFiles(archive).length);
+            assertEquals(archive, queue.fileForCycle(firstCycle).getParentFile());
+            assertEquals(firstCycle, queue.firstCycle());
+
+            appender.writeText("day-3");
+            ExcerptTailer tailer = queue.createTailer();
+            for (int i = 0; i < 4; i++)
+                assertEquals("day-" + i, tailer.readText());
+            assertNull(tailer.readText());
+
+            tailer.direction(TailerDirection.BACKWARD).toEnd();
+            for (int i = 3; i >= 0; i--)
+                assertEquals("day-" + i, tailer.readText());
+            assertNull(tailer.readText());
+
+            assertEquals(4, queue.listCyclesBetween(firstCycle, queue.lastCycle()).size());
+        }
+    }
+
+    @Test
+    public void shouldCopyClosedCyclesBeforeDeletingThem() throws Exception {
+        timeProvider.currentTimeMillis(System.currentTimeMillis());
+        File dir = DirectoryUtils.tempDir("spill-hot");
+        File archive = DirectoryUtils.tempDir("spill-archive");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(RollCycles.TEST_DAILY)
+                .timeProvider(timeProvider)
+                .eventLoop(idle)
+                .archivePath(archive)
+                .hotCycles(3)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 3; i++) {
+                appender.writeText("day-" + i);
+                timeProvider.currentTimeMillis(timeProvider.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+            }
+
+            Archiver archiver = new Archiver(queue);
+            assertEquals(2, archiver.archive());
+            assertEquals(0, archiver.archive());
+            assertEquals(3, cycleFiles(dir).length);
+            assertEquals(2, cycleFiles(archive).length);
+            assertEquals(dir, queue.fileForCycle(queue.firstCycle()).getParentFile());
+
+            // the next cycle pushes the first out of the queue directory.
+            appender.writeText("day-3");
+            // one copied and one deleted.
+            assertEquals(2, archiver.archive());
+            assertEquals(3, cycleFiles(dir).length);
+            assertEquals(3, cycleFiles(archive).length);
+
+            ExcerptTailer tailer = queue.createTailer();
+            for (int i = 0; i < 4; i++)
+                assertEquals("day-" + i, tailer.readText());
+            assertNull(tailer.readText());
+        }
+    }
+
+    @Test
+    public void shouldKeepTheLastCycleWithinHotBytes() throws Exception {
+        timeProvider.currentTimeMillis(System.currentTimeMillis());
+        File dir = DirectoryUtils.tempDir("spill-bytes-hot");
+        File archive = DirectoryUtils.tempDir("spill-bytes-archive");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(RollCycles.TEST_DAILY)
+                .timeProvider(timeProvider)
+                .eventLoop(idle)
+                .archivePath(archive)
+                .hotCycles(10)
+                .hotBytes(0)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 3; i++) {
+                appender.writeText("day-" + i);
+                timeProvider.currentTimeMillis(timeProvider.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+            }
+
+            new Archiver(queue).archive();
+            assertEquals(1, cycleFiles(dir).length);
+            assertEquals(2, cycleFiles(archive).length);
+        }
+    }
+
+    private static File[] cycleFiles(File dir) {
+        File[] files = dir.listFiles(f -> f.getName().endsWith(SingleChronicleQueue.SUFFIX));
+        assertNotNull(files);
+        return files;
+    }
+}
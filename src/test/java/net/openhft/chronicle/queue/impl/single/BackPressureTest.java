@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.queue.BackPressurePolicy;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class BackPressureTest {
+    @Test
+    public void shouldDropWhileTheNamedTailerIsBehind() {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("back-pressure-drop"))
+                .testBlockSize()
+                .backPressurePolicy(BackPressurePolicy.drop(5).andCheckEvery(1))
+                .build()) {
+            ExcerptTailer tailer = queue.createTailer("reader");
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 10; i++)
+                appender.writeText("message-" + i);
+
+            // nothing has been read, so the tailer is at the start.
+            for (int i = 0; i < 5; i++)
+                assertEquals("message-" + i, tailer.readText());
+            assertNull(tailer.readText());
+
+            // the tailer has caught up.
+            appender.writeText("after");
+            assertEquals("after", tailer.readText());
+        }
+    }
+
+    @Test
+    public void shouldCallBackAndWrite() {
+        AtomicLong lastLag = new AtomicLong();
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("back-pressure-callback"))
+                .testBlockSize()
+                .backPressurePolicy(BackPressurePolicy.callback(3, lastLag::set))
+                .build()) {
+            ExcerptTailer tailer = queue.createTailer("reader");
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 10; i++)
+                appender.writeText("message-" + i);
+
+            assertTrue(lastLag.get() >= 3);
+            for (int i = 0; i < 10; i++)
+                assertEquals("message-" + i, tailer.readText());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldTimeOutWhenBlocked() {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("back-pressure-block"))
+                .testBlockSize()
+                .backPressurePolicy(BackPressurePolicy.block(2, 50, TimeUnit.MILLISECONDS))
+                .build()) {
+            queue.createTailer("reader");
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 10; i++)
+                appender.writeText("message-" + i);
+        }
+    }
+
+    @Test
+    public void shouldWriteAgainAfterATimeOut() {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("back-pressure-retry"))
+                .testBlockSize()
+                .backPressurePolicy(BackPressurePolicy.block(2, 50, TimeUnit.MILLISECONDS).andCheckEvery(1))
+                .build()) {
+            ExcerptTailer tailer = queue.createTailer("reader");
+            ExcerptAppender appender = queue.acquireAppender();
+            appender.writeText("message-0");
+            appender.writeText("message-1");
+            try {
+                appender.writeText("message-2");
+                fail();
+            } catch (IllegalStateException expected) {
+                // the tailer is too far behind.
+            }
+
+            // once the tailer catches up, the appender can be used again.
+            assertEquals("message-0", tailer.readText());
+            assertEquals("message-1", tailer.readText());
+            appender.writeText("message-2");
+            assertEquals("message-2", tailer.readText());
+        }
+    }
+
+    @Test
+    public void shouldMeasureTheLagToTheExcerptsOfOtherAppenders() {
+        File dir = DirectoryUtils.tempDir("back-pressure-appenders");
+        try (SingleChronicleQueue other = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .build();
+             SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                     .testBlockSize()
+                     .backPressurePolicy(BackPressurePolicy.drop(5).andCheckEvery(1))
+                     .build()) {
+            ExcerptTailer tailer = queue.createTailer("reader");
+            ExcerptAppender otherAppender = other.acquireAppender();
+            for (int i = 0; i < 10; i++)
+                otherAppender.writeText("message-" + i);
+
+            // this appender has written nothing, but the tailer is 10 behind.
+            queue.acquireAppender().writeText("dropped");
+            for (int i = 0; i < 10; i++)
+                assertEquals("message-" + i, tailer.readText());
+            assertNull(tailer.readText());
+        }
+    }
+
+    @Test
+    public void shouldNotApplyWithoutNamedTailers() {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("back-pressure-none"))
+                .testBlockSize()
+                .backPressurePolicy(BackPressurePolicy.drop(1))
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 10; i++)
+                appender.writeText("message-" + i);
+            ExcerptTailer tailer = queue.createTailer();
+            for (int i = 0; i < 10; i++)
+                assertEquals("message-" + i, tailer.readText());
+        }
+    }
+}
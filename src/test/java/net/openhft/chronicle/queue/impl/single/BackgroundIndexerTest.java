@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.threads.EventLoop;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.impl.WireStore;
+import net.openhft.chronicle.threads.EventGroup;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BackgroundIndexerTest {
+    private static final int MESSAGES = 1000;
+    // never started, so the tests decide when to index.
+    private final EventLoop idle = new EventGroup(true);
+
+    @After
+    public void closeEventLoop() {
+        idle.close();
+    }
+
+    @Test
+    public void shouldIndexWhatLazyAppendersWrite() throws InvalidEventHandlerException {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("background-indexer"))
+                .testBlockSize()
+                .eventLoop(idle)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender().lazyIndexing(true);
+            List<Long> indices = new ArrayList<>();
+            for (int i = 0; i < MESSAGES; i++) {
+                appender.writeText("message-" + i);
+                indices.add(appender.lastIndexAppended());
+            }
+            long before = nextEntryToBeIndexed(queue);
+
+            BackgroundIndexer indexer = new BackgroundIndexer(queue);
+            while (indexer.action()) ;
+            assertEquals(0, indexer.lag());
+            long after = nextEntryToBeIndexed(queue);
+            assertTrue("before: " + before + ", after: " + after, after > before);
+            assertTrue(after >= MESSAGES - queue.rollCycle().defaultIndexSpacing());
+
+            ExcerptTailer tailer = queue.createTailer();
+            assertTrue(tailer.moveToIndex(indices.get(MESSAGES - 1)));
+            assertEquals("message-" + (MESSAGES - 1), tailer.readText());
+            indexer.close();
+        }
+    }
+
+    @Test
+    public void shouldOnlyHaveOneIndexerAtATime() throws InvalidEventHandlerException {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("background-indexer-lease"))
+                .testBlockSize()
+                .eventLoop(idle)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender().lazyIndexing(true);
+            for (int i = 0; i < MESSAGES; i++)
+                appender.writeText("message-" + i);
+
+            BackgroundIndexer first = new BackgroundIndexer(queue);
+            BackgroundIndexer second = new BackgroundIndexer(queue);
+            assertTrue(first.action());
+            assertFalse(second.action());
+
+            // closing the first releases the lease.
+            first.close();
+            assertTrue(second.action());
+            second.close();
+        }
+    }
+
+    private static long nextEntryToBeIndexed(SingleChronicleQueue queue) {
+        WireStore store = queue.storeForCycle(queue.cycle(), queue.epoch(), false);
+        assertNotNull(store);
+        try {
+            return ((SingleChronicleQueueStore) store).indexing.nextEntryToBeIndexed();
+        } finally {
+            queue.release(store);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.queue.impl.WireStore;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BulkTransferTest {
+    private final SetTimeProvider timeProvider = new SetTimeProvider();
+
+    @NotNull
+    private SingleChronicleQueue queue(@NotNull File dir) {
+        return SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(RollCycles.TEST_DAILY)
+                .timeProvider(timeProvider)
+                .build();
+    }
+
+    // writes 10 messages a day for 3 days, returning their indices.
+    @NotNull
+    private List<Long> write(@NotNull SingleChronicleQueue queue) {
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(3);
+        List<Long> indices = new ArrayList<>();
+        ExcerptAppender appender = queue.acquireAppender();
+        for (int day = 0; day < 3; day++) {
+            timeProvider.currentTimeMillis(start + TimeUnit.DAYS.toMillis(day));
+            for (int i = 0; i < 10; i++) {
+                appender.writeText("day-" + day + "-" + i);
+                indices.add(appender.lastIndexAppended());
+            }
+        }
+        return indices;
+    }
+
+    private static void assertContains(@NotNull SingleChronicleQueue queue, @NotNull List<Long> indices, int firstDay) {
+        ExcerptTailer tailer = queue.createTailer();
+        int firstCycle = queue.rollCycle().toCycle(indices.get(0));
+        for (long index : indices) {
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertTrue(dc.isPresent());
+                assertEquals(index, dc.index());
+                int day = firstDay + queue.rollCycle().toCycle(index) - firstCycle;
+                assertEquals("day-" + day + "-" + queue.rollCycle().toSequenceNumber(index),
+                        dc.wire().bytes().toString());
+            }
+        }
+        assertNull(tailer.readText());
+    }
+
+    @Test
+    public void shouldExportAndImportAnIndexRange() throws Exception {
+        File export = new File(DirectoryUtils.tempDir("export").getPath() + ".bin");
+        export.getParentFile().mkdirs();
+        try (SingleChronicleQueue source = queue(DirectoryUtils.tempDir("export-source"));
+             SingleChronicleQueue target = queue(DirectoryUtils.tempDir("export-target"))) {
+            List<Long> indices = write(source);
+            // a range can be imported where the target has the excerpts before it, here from the start of a cycle.
+            List<Long> range = indices.subList(10, 24);
+
+            try (FileChannel out = FileChannel.open(export.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                assertTrue(source.exportTo(out, range.get(0), range.get(range.size() - 1)) > 0);
+            }
+            try (FileChannel in = FileChannel.open(export.toPath(), StandardOpenOption.READ)) {
+                assertEquals(range.size(), target.importFrom(in));
+            }
+            assertContains(target, range, 1);
+
+            // the imported excerpts are indexed
+            ExcerptTailer tailer = target.createTailer();
+            assertTrue(tailer.moveToIndex(range.get(7)));
+            assertEquals("day-1-7", tailer.readText());
+        } finally {
+            export.delete();
+        }
+    }
+
+    @Test
+    public void shouldExportTheLiveCycleUpToTheLastCompleteExcerpt() throws Exception {
+        File export = new File(DirectoryUtils.tempDir("export").getPath() + ".bin");
+        export.getParentFile().mkdirs();
+        try (SingleChronicleQueue source = queue(DirectoryUtils.tempDir("export-source"));
+             SingleChronicleQueue target = queue(DirectoryUtils.tempDir("export-target"))) {
+            List<Long> indices = write(source);
+            List<Long> lastDay = indices.subList(20, 30);
+            long toIndex = source.rollCycle().toIndex(source.lastCycle() + 1, 0);
+
+            // still being written
+            try (DocumentContext dc = source.acquireAppender().writingDocument();
+                 FileChannel out = FileChannel.open(export.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                dc.wire().bytes().append8bit("incomplete");
+                assertTrue(source.exportTo(out, lastDay.get(0), toIndex) > 0);
+            }
+            try (FileChannel in = FileChannel.open(export.toPath(), StandardOpenOption.READ)) {
+                assertEquals(lastDay.size(), target.importFrom(in));
+            }
+            assertContains(target, lastDay, 2);
+        } finally {
+            export.delete();
+        }
+    }
+
+    @Test
+    public void shouldCopyClosedCycles() throws Exception {
+        File copies = DirectoryUtils.tempDir("cycle-copies");
+        copies.mkdirs();
+        try (SingleChronicleQueue source = queue(DirectoryUtils.tempDir("cycle-source"));
+             SingleChronicleQueue target = queue(DirectoryUtils.tempDir("cycle-target"))) {
+            List<Long> indices = write(source);
+            int firstCycle = source.firstCycle();
+
+            for (int cycle = firstCycle; cycle < firstCycle + 2; cycle++) {
+                WireStore store = source.storeForCycle(cycle, source.epoch(), false);
+                Path copy = copies.toPath().resolve(store.file().getName());
+                source.release(store);
+                source.exportCycle(cycle, copy);
+                target.importCycle(copy);
+                assertEquals(firstCycle, target.firstCycle());
+                assertEquals(cycle, target.lastCycle());
+            }
+            assertContains(target, indices.subList(0, 20), 0);
+
+            try {
+                source.exportCycle(source.lastCycle(), copies.toPath().resolve("last"));
+                fail();
+            } catch (IllegalStateException expected) {
+                // the last cycle can still be written to.
+            }
+        }
+    }
+}
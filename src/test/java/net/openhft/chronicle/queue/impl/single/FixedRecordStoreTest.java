@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.TailerDirection;
+import net.openhft.chronicle.queue.impl.WireStore;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class FixedRecordStoreTest {
+    private static final int RECORD_SIZE = 16;
+    private static final int RECORDS = 500;
+
+    @Test
+    public void shouldMoveToAnyIndexWithoutAnIndex() {
+        File dir = DirectoryUtils.tempDir("fixed-record");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .recordSize(RECORD_SIZE)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            long[] indices = write(appender);
+
+            WireStore store = queue.storeForCycle(queue.cycle(), queue.epoch(), false);
+            try {
+                assertTrue(store instanceof FixedRecordStore);
+                assertEquals(0, ((FixedRecordStore) store).indexing.nextEntryToBeIndexed());
+            } finally {
+                queue.release(store);
+            }
+
+            ExcerptTailer tailer = queue.createTailer();
+            for (int i : new int[]{RECORDS - 1, 0, 250, 1, 499, 123}) {
+                assertTrue(tailer.moveToIndex(indices[i]));
+                assertRecord(tailer, i);
+            }
+            assertFalse(tailer.moveToIndex(indices[RECORDS - 1] + 2));
+
+            tailer.toEnd();
+            assertEquals(indices[RECORDS - 1] + 1, tailer.index());
+            tailer.direction(TailerDirection.BACKWARD).toEnd();
+            assertRecord(tailer, RECORDS - 1);
+            assertRecord(tailer, RECORDS - 2);
+        }
+
+        // the cycle says its records are of a fixed size, whatever the reader was built with.
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .build()) {
+            ExcerptTailer tailer = queue.createTailer();
+            for (int i = 0; i < RECORDS; i++)
+                assertRecord(tailer, i);
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertFalse(dc.isPresent());
+            }
+        }
+    }
+
+    @Test
+    public void shouldRejectExcerptsLongerThanTheRecordSize() {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("fixed-record-long"))
+                .testBlockSize()
+                .recordSize(RECORD_SIZE)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            try {
+                appender.writeBytes(Bytes.allocateElasticDirect(RECORD_SIZE + 1).writeSkip(RECORD_SIZE + 1));
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+            try {
+                appender.writeBytes(b -> b.writeSkip(RECORD_SIZE + 1));
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+
+            // shorter ones are padded.
+            appender.writeBytes(b -> b.writeLong(42));
+            ExcerptTailer tailer = queue.createTailer();
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertTrue(dc.isPresent());
+                Bytes<?> bytes = dc.wire().bytes();
+                assertEquals(RECORD_SIZE, bytes.readRemaining());
+                assertEquals(42, bytes.readLong());
+                assertEquals(0, bytes.readLong());
+            }
+        }
+    }
+
+    private static long[] write(ExcerptAppender appender) {
+        long[] indices = new long[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            long value = i;
+            if (i % 2 == 0) {
+                appender.writeBytes(b -> b.writeLong(value).writeLong(-value));
+            } else {
+                Bytes<?> bytes = Bytes.allocateElasticDirect(RECORD_SIZE);
+                appender.writeBytes(bytes.writeLong(value).writeLong(-value));
+                bytes.release();
+            }
+            indices[i] = appender.lastIndexAppended();
+        }
+        return indices;
+    }
+
+    private static void assertRecord(ExcerptTailer tailer, long value) {
+        try (DocumentContext dc = tailer.readingDocument()) {
+            assertTrue(dc.isPresent());
+            Bytes<?> bytes = dc.wire().bytes();
+            assertEquals(RECORD_SIZE, bytes.readRemaining());
+            assertEquals(value, bytes.readLong());
+            assertEquals(-value, bytes.readLong());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MappedMemoryBudgetTest {
+    private static final int QUEUES = 5;
+    private static final int MESSAGES = 20;
+
+    @After
+    public void removeTheBudget() {
+        MappedMemoryBudget.INSTANCE.maxBytes(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldCarryOnWhereTheyWereOnceUnmapped() {
+        MappedMemoryBudget budget = MappedMemoryBudget.INSTANCE;
+        SingleChronicleQueue[] queues = new SingleChronicleQueue[QUEUES];
+        try {
+            for (int q = 0; q < QUEUES; q++)
+                queues[q] = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("mapped-budget-" + q))
+                        .testBlockSize()
+                        .build();
+            long maxBytes = 3 * queues[0].mappedSize();
+            budget.maxBytes(maxBytes);
+            long evictions = budget.evictions(), misses = budget.misses();
+
+            ExcerptAppender[] appenders = new ExcerptAppender[QUEUES];
+            ExcerptTailer[] tailers = new ExcerptTailer[QUEUES];
+            for (int q = 0; q < QUEUES; q++) {
+                appenders[q] = queues[q].acquireAppender();
+                tailers[q] = queues[q].createTailer();
+            }
+            for (int i = 0; i < MESSAGES; i++) {
+                for (int q = 0; q < QUEUES; q++) {
+                    appenders[q].writeText("queue-" + q + "-" + i);
+                    assertEquals(i, queues[q].rollCycle().toSequenceNumber(appenders[q].lastIndexAppended()));
+                }
+                for (int q = 0; q < QUEUES; q++)
+                    assertEquals("queue-" + q + "-" + i, tailers[q].readText());
+                assertTrue(budget.mappedBytes() <= maxBytes);
+            }
+            for (int q = 0; q < QUEUES; q++)
+                assertNull(tailers[q].readText());
+
+            assertTrue(budget.evictions() > evictions);
+            assertTrue(budget.misses() > misses);
+
+        } finally {
+            for (SingleChronicleQueue queue : queues)
+                if (queue != null)
+                    queue.close();
+        }
+    }
+
+    @Test
+    public void shouldNotUnmapWhileReading() {
+        MappedMemoryBudget budget = MappedMemoryBudget.INSTANCE;
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("mapped-budget-busy"))
+                .testBlockSize()
+                .build();
+             SingleChronicleQueue other = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("mapped-budget-other"))
+                     .testBlockSize()
+                     .build()) {
+            queue.acquireAppender().writeText("hello");
+            budget.maxBytes(queue.mappedSize());
+
+            ExcerptTailer tailer = queue.createTailer();
+            ExcerptAppender appender = other.acquireAppender();
+            try (DocumentContext dc = tailer.readingDocument()) {
+                assertTrue(dc.isPresent());
+                // mapping another cycle can't unmap the one being read.
+                appender.writeText("world");
+                assertNotNull(tailer.store);
+            }
+            assertTrue(budget.mappedBytes() > queue.mappedSize());
+
+            long hits = budget.hits();
+            appender.writeText("again");
+            assertTrue(budget.hits() > hits);
+            assertNull(tailer.readText());
+
+            ExcerptTailer otherTailer = other.createTailer();
+            assertEquals("world", otherTailer.readText());
+            assertEquals("again", otherTailer.readText());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.threads.EventLoop;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.InsufficientDiskSpaceException;
+import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.threads.EventGroup;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PreallocatorTest {
+    private static final long SIZE = 1 << 20;
+    private final SetTimeProvider timeProvider = new SetTimeProvider();
+    // never started, so the tests decide when to preallocate.
+    private final EventLoop idle = new EventGroup(true);
+
+    @After
+    public void closeEventLoop() {
+        idle.close();
+    }
+
+    @Test
+    public void shouldUseThePreallocatedFileForTheNextCycle() throws Exception {
+        timeProvider.currentTimeMillis(System.currentTimeMillis());
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("preallocate"))
+                .testBlockSize()
+                .rollCycle(RollCycles.TEST_DAILY)
+                .timeProvider(timeProvider)
+                .eventLoop(idle)
+                .preallocateBytes(SIZE)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            appender.writeText("day-0");
+
+            int next = queue.cycle() + 1;
+            Preallocator preallocator = new Preallocator(queue);
+            assertTrue(preallocator.preallocate(next));
+            assertFalse(preallocator.preallocate(next));
+            File file = queue.fileForCycle(next);
+            File preallocated = new File(file.getPath() + Preallocator.SUFFIX);
+            assertFalse(file.exists());
+            assertEquals(SIZE, preallocated.length());
+
+            timeProvider.currentTimeMillis(timeProvider.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+            appender.writeText("day-1");
+            assertTrue(file.exists());
+            assertTrue(file.length() >= SIZE);
+            assertFalse(preallocated.exists());
+
+            ExcerptTailer tailer = queue.createTailer();
+            assertEquals("day-0", tailer.readText());
+            assertEquals("day-1", tailer.readText());
+            assertNull(tailer.readText());
+        }
+    }
+
+    @Test
+    public void shouldWriteASlicePerCall() throws Exception {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("preallocate-slices"))
+                .testBlockSize()
+                .rollCycle(RollCycles.TEST_DAILY)
+                .eventLoop(idle)
+                .preallocateBytes(3 * Preallocator.SLICE_SIZE)
+                .build()) {
+            int next = queue.cycle() + 1;
+            File preallocated = new File(queue.fileForCycle(next).getPath() + Preallocator.SUFFIX);
+            Preallocator preallocator = new Preallocator(queue);
+            for (int i = 0; i < 3; i++) {
+                assertFalse(preallocated.exists());
+                assertTrue(preallocator.preallocate(next));
+            }
+            assertEquals(3 * Preallocator.SLICE_SIZE, preallocated.length());
+            assertFalse(preallocator.preallocate(next));
+        }
+    }
+
+    @Test(expected = InsufficientDiskSpaceException.class)
+    public void shouldFailFastBelowTheReserve() {
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("disk-reserve"))
+                .testBlockSize()
+                .eventLoop(idle)
+                .diskSpaceReserve(Long.MAX_VALUE)
+                .build()) {
+            queue.acquireAppender().writeText("never written");
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.core.threads.EventLoop;
+import net.openhft.chronicle.core.time.SetTimeProvider;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.RetentionPolicy;
+import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.queue.impl.StoreFileListener;
+import net.openhft.chronicle.threads.EventGroup;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RetentionTest {
+    private final SetTimeProvider timeProvider = new SetTimeProvider();
+    private final List<Integer> deleted = new ArrayList<>();
+    // never started, so the tests decide when the policy is applied.
+    private final EventLoop idle = new EventGroup(true);
+
+    @After
+    public void closeEventLoop() {
+        idle.close();
+    }
+
+    @NotNull
+    private SingleChronicleQueue queue(@NotNull File dir, @NotNull RetentionPolicy policy) {
+        return builder(dir, policy).eventLoop(idle).build();
+    }
+
+    @NotNull
+    private SingleChronicleQueueBuilder builder(@NotNull File dir, @NotNull RetentionPolicy policy) {
+        return SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(RollCycles.TEST_DAILY)
+                .timeProvider(timeProvider)
+                .retentionPolicy(policy)
+                .storeFileListener(new StoreFileListener() {
+                    @Override
+                    public void onReleased(int cycle, File file) {
+                    }
+
+                    @Override
+                    public void onDeleted(int cycle, File file) {
+                        synchronized (deleted) {
+                            deleted.add(cycle);
+                        }
+                    }
+                });
+    }
+
+    // writes a message a day for 5 days, ending today.
+    private void write(@NotNull SingleChronicleQueue queue) {
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(4);
+        ExcerptAppender appender = queue.acquireAppender();
+        for (int day = 0; day < 5; day++) {
+            timeProvider.currentTimeMillis(start + TimeUnit.DAYS.toMillis(day));
+            appender.writeText("day-" + day);
+        }
+    }
+
+    @Test
+    public void shouldKeepTheLastCycles() {
+        try (SingleChronicleQueue queue = queue(DirectoryUtils.tempDir("retention-cycles"),
+                RetentionPolicy.keepCycles(2))) {
+            write(queue);
+            int lastCycle = queue.lastCycle();
+            assertEquals(3, queue.applyRetention());
+            assertEquals(lastCycle - 1, queue.firstCycle());
+            assertEquals(2, queue.cyclesBetween(Integer.MIN_VALUE, Integer.MAX_VALUE).size());
+
+            ExcerptTailer tailer = queue.createTailer();
+            assertEquals("day-3", tailer.readText());
+            assertEquals("day-4", tailer.readText());
+        }
+    }
+
+    @Test
+    public void shouldKeepTheLastDay() {
+        try (SingleChronicleQueue queue = queue(DirectoryUtils.tempDir("retention-hours"),
+                RetentionPolicy.keepFor(1, TimeUnit.DAYS))) {
+            write(queue);
+            // day-3 ended less than a day ago.
+            assertEquals(3, queue.applyRetention());
+            assertEquals("day-3", queue.createTailer().readText());
+        }
+    }
+
+    @Test
+    public void shouldNotDeleteCyclesInUse() {
+        try (SingleChronicleQueue queue = queue(DirectoryUtils.tempDir("retention-in-use"),
+                RetentionPolicy.keepCycles(1))) {
+            write(queue);
+            int firstCycle = queue.firstCycle();
+            ExcerptTailer tailer = queue.createTailer();
+            assertEquals("day-0", tailer.readText());
+
+            // the tailer holds the first cycle, and later cycles are kept so there is no gap.
+            assertEquals(0, queue.applyRetention());
+            assertEquals(firstCycle, queue.firstCycle());
+
+            assertEquals("day-1", tailer.readText());
+            assertEquals(1, queue.applyRetention());
+            assertEquals(firstCycle + 1, queue.firstCycle());
+
+            tailer.toEnd();
+            assertEquals(3, queue.applyRetention());
+            assertEquals(queue.lastCycle(), queue.firstCycle());
+            assertEquals(4, deleted.size());
+        }
+    }
+
+    @Test
+    public void shouldNotDeletePinnedCycles() {
+        try (SingleChronicleQueue queue = queue(DirectoryUtils.tempDir("retention-pinned"),
+                RetentionPolicy.keepCycles(1))) {
+            write(queue);
+            int firstCycle = queue.firstCycle();
+            // as a tailer does when its store is unmapped to stay within the budget.
+            assertTrue(queue.pin(firstCycle + 1));
+            assertEquals(1, queue.applyRetention());
+            assertEquals(firstCycle + 1, queue.firstCycle());
+
+            queue.unpin(firstCycle + 1);
+            assertEquals(3, queue.applyRetention());
+            assertEquals(queue.lastCycle(), queue.firstCycle());
+        }
+    }
+
+    @Test
+    public void shouldApplyTheRetentionPolicyInTheBackground() {
+        // without an event loop the queue starts one of its own.
+        try (SingleChronicleQueue queue = builder(DirectoryUtils.tempDir("retention-background"),
+                RetentionPolicy.keepBytes(0)).build()) {
+            write(queue);
+            long timeout = System.currentTimeMillis() + 5_000;
+            while (deletedCount() < 4 && System.currentTimeMillis() < timeout)
+                Thread.yield();
+            assertEquals(4, deletedCount());
+            assertEquals(queue.lastCycle(), queue.firstCycle());
+        }
+    }
+
+    private int deletedCount() {
+        synchronized (deleted) {
+            return deleted.size();
+        }
+    }
+}
@@ -2,8 +2,11 @@ package net.openhft.chronicle.queue.impl.single;
 
 import net.openhft.chronicle.core.time.TimeProvider;
 import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
 import net.openhft.chronicle.queue.ExcerptTailer;
 import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.queue.TailerDirection;
+import net.openhft.chronicle.queue.impl.QueueMetrics;
 import net.openhft.chronicle.queue.service.HelloWorld;
 import net.openhft.chronicle.wire.DocumentContext;
 import net.openhft.chronicle.wire.MethodReader;
@@ -14,10 +17,14 @@ import org.junit.Test;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class StoreTailerTest {
@@ -89,6 +96,207 @@ public class StoreTailerTest {
         secondInputQueue.createTailer().afterLastWritten(outputQueue);
     }
 
+    @Test
+    public void shouldUseSourceCheckpointsToFindLastWrittenIndex() throws Exception {
+        final SingleChronicleQueue firstInputQueue =
+                createQueue(dataDirectory, RollCycles.TEST_DAILY, 1, "checkpointFirstInput");
+        final SingleChronicleQueue secondInputQueue =
+                createQueue(dataDirectory, RollCycles.TEST_DAILY, 2, "checkpointSecondInput");
+        final SingleChronicleQueue outputQueue =
+                createQueue(dataDirectory, RollCycles.TEST_DAILY, 0, "checkpointOutput");
+
+        final StringEvents firstWriter = firstInputQueue.acquireAppender().
+                methodWriterBuilder(StringEvents.class).get();
+        final StringEvents secondWriter = secondInputQueue.acquireAppender().
+                methodWriterBuilder(StringEvents.class).get();
+        firstWriter.onEvent("one");
+        firstWriter.onEvent("two");
+        firstWriter.onEvent("three");
+        for (int i = 0; i < 50; i++)
+            secondWriter.onEvent("second-" + i);
+
+        final CapturingStringEvents outputWriter = new CapturingStringEvents(outputQueue.acquireAppender().
+                methodWriterBuilder(StringEvents.class).recordHistory(true).get());
+        final MethodReader firstMethodReader = firstInputQueue.createTailer().methodReader(outputWriter);
+        final MethodReader secondMethodReader = secondInputQueue.createTailer().methodReader(outputWriter);
+        assertThat(firstMethodReader.readOne(), is(true));
+        assertThat(firstMethodReader.readOne(), is(true));
+        // the output is dominated by the other source.
+        while (secondMethodReader.readOne()) {
+        }
+
+        final SourceCheckpoints checkpoints = outputQueue.sourceCheckpoints(false);
+        assertThat(checkpoints == null, is(false));
+        assertThat(checkpoints.find(1) >= 0, is(true));
+        assertThat(checkpoints.find(2) >= 0, is(true));
+        assertThat(checkpoints.find(3), is(-1L));
+
+        final List<String> events = new ArrayList<>();
+        final MethodReader restarted = firstInputQueue.createTailer().afterLastWritten(outputQueue)
+                .methodReader(new CapturingStringEvents(events::add));
+        assertThat(restarted.readOne(), is(true));
+        assertThat(events, is(Collections.singletonList("three")));
+    }
+
+    @Test
+    public void shouldOnlyReadAcknowledgedExcerpts() throws Exception {
+        final SingleChronicleQueue queue =
+                createQueue(dataDirectory, RollCycles.TEST_DAILY, 0, "acknowledged");
+        final ExcerptAppender appender = queue.acquireAppender();
+        appender.writeText("one");
+        final long firstIndex = appender.lastIndexAppended();
+        appender.writeText("two");
+        appender.writeText("three");
+        final long lastIndex = appender.lastIndexAppended();
+
+        final ExcerptTailer tailer = queue.createTailer();
+        tailer.readAfterReplicaAcknowledged(true);
+        assertThat(tailer.readText(), is(nullValue()));
+
+        final SingleChronicleQueueExcerpts.StoreTailer acknowledger =
+                (SingleChronicleQueueExcerpts.StoreTailer) queue.createTailer();
+        acknowledger.lastAcknowledgedIndexReplicated(firstIndex);
+        assertThat(acknowledger.lastAcknowledgedIndexReplicated(), is(firstIndex));
+        assertThat(tailer.readText(), is("one"));
+        assertThat(tailer.readText(), is(nullValue()));
+
+        // a stale acknowledgement is coalesced away
+        acknowledger.lastAcknowledgedIndexReplicated(firstIndex - 1);
+        assertThat(acknowledger.lastAcknowledgedIndexReplicated(), is(firstIndex));
+
+        acknowledger.lastAcknowledgedIndexReplicated(lastIndex);
+        assertThat(acknowledger.lastAcknowledgedIndexReplicated(), is(lastIndex));
+        assertThat(tailer.readText(), is("two"));
+        assertThat(tailer.readText(), is("three"));
+        assertThat(tailer.readText(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldAcknowledgeTheCyclesSkipped() throws Exception {
+        final MutableTimeProvider timeProvider = new MutableTimeProvider();
+        timeProvider.setTime(System.currentTimeMillis());
+        final SingleChronicleQueue queue = build(createQueue(dataDirectory, RollCycles.MINUTELY, 0, "acknowledgedCycles", false)
+                .timeProvider(timeProvider));
+        final ExcerptAppender appender = queue.acquireAppender();
+        appender.writeText("one");
+        final long firstIndex = appender.lastIndexAppended();
+        for (String text : new String[]{"two", "three"}) {
+            timeProvider.addTime(1, TimeUnit.MINUTES);
+            appender.writeText(text);
+        }
+        final long lastIndex = appender.lastIndexAppended();
+
+        final ExcerptTailer tailer = queue.createTailer();
+        tailer.readAfterReplicaAcknowledged(true);
+        final SingleChronicleQueueExcerpts.StoreTailer acknowledger =
+                (SingleChronicleQueueExcerpts.StoreTailer) queue.createTailer();
+        acknowledger.lastAcknowledgedIndexReplicated(firstIndex);
+        assertThat(tailer.readText(), is("one"));
+        assertThat(tailer.readText(), is(nullValue()));
+
+        // jumps over the second cycle, which has to be acknowledged too.
+        acknowledger.lastAcknowledgedIndexReplicated(lastIndex);
+        assertThat(tailer.readText(), is("two"));
+        assertThat(tailer.readText(), is("three"));
+        assertThat(tailer.readText(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldSeekNearTheLastExcerptRead() throws Exception {
+        final SingleChronicleQueue queue =
+                createQueue(dataDirectory, RollCycles.DAILY, 0, "seekNear");
+        final ExcerptAppender appender = queue.acquireAppender();
+        final List<Long> indices = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            appender.writeText("message-" + i);
+            indices.add(appender.lastIndexAppended());
+        }
+
+        final ExcerptTailer tailer = queue.createTailer();
+        // forwards a few at a time, back within the block, then a long way in both directions.
+        final int[] targets = {0, 3, 4, 10, 7, 64, 70, 65, 66, 140, 299, 298, 1, 250, 129, 130};
+        for (int target : targets) {
+            assertThat(tailer.moveToIndex(indices.get(target)), is(true));
+            assertThat(tailer.index(), is(indices.get(target)));
+            assertThat(tailer.readText(), is("message-" + target));
+        }
+        // past the end
+        assertThat(tailer.moveToIndex(indices.get(299) + 1), is(false));
+    }
+
+    @Test
+    public void shouldReadBackwardsWithoutAScanPerExcerpt() throws Exception {
+        final SingleChronicleQueue queue = build(createQueue(dataDirectory, RollCycles.DAILY, 0, "backwards", false)
+                .metrics(true));
+        final ExcerptAppender appender = queue.acquireAppender();
+        for (int i = 0; i < 300; i++)
+            appender.writeText("message-" + i);
+
+        final QueueMetrics metrics = queue.metrics();
+        final long scannedBefore = metrics.get(QueueMetrics.Counter.LINEAR_SCAN_LENGTH);
+        final ExcerptTailer tailer = queue.createTailer().direction(TailerDirection.BACKWARD).toEnd();
+        for (int i = 299; i >= 0; i--)
+            assertThat(tailer.readText(), is("message-" + i));
+        assertThat(tailer.readText(), is(nullValue()));
+
+        // each block is read forward once, rather than scanned for each excerpt.
+        final long scanned = metrics.get(QueueMetrics.Counter.LINEAR_SCAN_LENGTH) - scannedBefore;
+        assertThat("scanned " + scanned, scanned < 1000, is(true));
+    }
+
+    @Test
+    public void shouldMoveToEndFromTheLastWritten() throws Exception {
+        final SingleChronicleQueue queue = build(createQueue(dataDirectory, RollCycles.DAILY, 0, "last-written", false)
+                .metrics(true)
+                .trackLastWritten(true));
+        final ExcerptAppender appender = queue.acquireAppender();
+        // the last is well past the last one indexed.
+        for (int i = 0; i < 320; i++)
+            appender.writeText("message-" + i);
+
+        final QueueMetrics metrics = queue.metrics();
+        final long scannedBefore = metrics.get(QueueMetrics.Counter.LINEAR_SCAN_LENGTH);
+        final ExcerptTailer tailer = queue.createTailer().toEnd();
+        assertThat(tailer.index(), is(appender.lastIndexAppended() + 1));
+        final long scanned = metrics.get(QueueMetrics.Counter.LINEAR_SCAN_LENGTH) - scannedBefore;
+        assertThat("scanned " + scanned, scanned < 8, is(true));
+
+        assertThat(tailer.readText(), is(nullValue()));
+        appender.writeText("after");
+        assertThat(tailer.readText(), is("after"));
+
+        final ExcerptTailer backward = queue.createTailer().direction(TailerDirection.BACKWARD).toEnd();
+        assertThat(backward.readText(), is("after"));
+        assertThat(backward.readText(), is("message-319"));
+    }
+
+    @Test
+    public void shouldStreamAcrossCycles() throws Exception {
+        final MutableTimeProvider timeProvider = new MutableTimeProvider();
+        timeProvider.setTime(System.currentTimeMillis());
+        final SingleChronicleQueue queue = build(createQueue(dataDirectory, RollCycles.MINUTELY, 0, "streaming", false)
+                .timeProvider(timeProvider));
+        final ExcerptAppender appender = queue.acquireAppender();
+        final char[] padding = new char[1000];
+        Arrays.fill(padding, '-');
+        for (int cycle = 0; cycle < 2; cycle++) {
+            for (int i = 0; i < 2000; i++)
+                appender.writeText(cycle + "-" + i + new String(padding));
+            timeProvider.addTime(1, TimeUnit.MINUTES);
+        }
+
+        final ExcerptTailer tailer = queue.createTailer().streaming(true);
+        assertThat(tailer.streaming(), is(true));
+        for (int cycle = 0; cycle < 2; cycle++)
+            for (int i = 0; i < 2000; i++)
+                assertThat(tailer.readText(), is(cycle + "-" + i + new String(padding)));
+        assertThat(tailer.readText(), is(nullValue()));
+
+        appender.writeText("live");
+        assertThat(tailer.streaming(false).streaming(), is(false));
+        assertThat(tailer.readText(), is("live"));
+    }
+
     @After
     public void after() throws Exception {
         closeQueues(createdQueues.toArray(new SingleChronicleQueue[0]));
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.impl.single;
+
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class TailerPositionsTest {
+    @Test
+    public void shouldCarryOnWhereTheNamedTailerStopped() {
+        File dir = DirectoryUtils.tempDir("named-tailer");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir).testBlockSize().build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 10; i++)
+                appender.writeText("message-" + i);
+
+            ExcerptTailer tailer = queue.createTailer("reader");
+            for (int i = 0; i < 4; i++)
+                assertEquals("message-" + i, tailer.readText());
+
+            // a different name starts from the beginning.
+            assertEquals("message-0", queue.createTailer("other").readText());
+        }
+
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir).testBlockSize().build()) {
+            ExcerptTailer tailer = queue.createTailer("reader");
+            for (int i = 4; i < 10; i++)
+                assertEquals("message-" + i, tailer.readText());
+            assertNull(tailer.readText());
+
+            // a tailer which has read everything waits for the next excerpt.
+            ExcerptTailer again = queue.createTailer("reader");
+            assertNull(again.readText());
+            queue.acquireAppender().writeText("message-10");
+            assertEquals("message-10", again.readText());
+        }
+    }
+
+    @Test
+    public void shouldRecordThePositionInBatches() {
+        File dir = DirectoryUtils.tempDir("named-tailer-batch");
+        try (SingleChronicleQueue queue = SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .namedTailerBatch(5)
+                .build()) {
+            ExcerptAppender appender = queue.acquireAppender();
+            for (int i = 0; i < 10; i++)
+                appender.writeText("message-" + i);
+
+            StoreTailer tailer = (StoreTailer) queue.createTailer("reader");
+            for (int i = 0; i < 7; i++)
+                assertEquals("message-" + i, tailer.readText());
+
+            // only the first batch was recorded.
+            assertEquals("message-5", queue.createTailer("reader").readText());
+
+            tailer.persistPosition();
+            assertEquals("message-7", queue.createTailer("reader").readText());
+        }
+    }
+
+    @Test
+    public void shouldFindTheSameSlotForAName() throws Exception {
+        File dir = DirectoryUtils.tempDir("tailer-positions");
+        dir.mkdirs();
+        try (TailerPositions positions = TailerPositions.open(dir, true)) {
+            assertNotNull(positions);
+            long slot = positions.slot("reader", true);
+            assertTrue(slot >= 0);
+            assertEquals(slot, positions.slot("reader", false));
+            assertEquals(-1, positions.slot("unknown", false));
+            assertEquals(TailerPositions.NO_INDEX, positions.lowestIndex());
+
+            positions.index(slot, 100);
+            positions.index(positions.slot("other", true), 50);
+            assertEquals(50, positions.lowestIndex());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.openhft.chronicle.queue.replication;
+
+import net.openhft.chronicle.bytes.NativeBytesStore;
+import net.openhft.chronicle.core.util.Histogram;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Measures the throughput of replicating a queue over loopback, and the latency from appending an
+ * excerpt to the source until the sink has acknowledged it.
+ */
+public class ReplicationMain {
+    static final int MESSAGES = Integer.getInteger("messages", 5_000_000);
+    static final int SIZE = Integer.getInteger("size", 64);
+    static final int LATENCY_SAMPLES = Integer.getInteger("samples", 200_000);
+
+    public static void main(String[] args) throws Exception {
+        try (SingleChronicleQueue source = SingleChronicleQueueBuilder
+                .binary(DirectoryUtils.tempDir("replication-source"))
+                .blockSize(128 << 20)
+                .build();
+             SingleChronicleQueue sink = SingleChronicleQueueBuilder
+                     .binary(DirectoryUtils.tempDir("replication-sink"))
+                     .blockSize(128 << 20)
+                     .build();
+             ReplicationSource replicationSource = new ReplicationSource(source, new InetSocketAddress("localhost", 0));
+             ReplicationSink replicationSink = new ReplicationSink(sink, replicationSource.address())) {
+
+            ExcerptAppender appender = source.acquireAppender();
+            NativeBytesStore payload = NativeBytesStore.from(new byte[SIZE]);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++)
+                appender.writeBytes(payload);
+            long last = appender.lastIndexAppended();
+            while (replicationSource.lastAcknowledgedIndex() != last)
+                Thread.yield();
+            long time = System.nanoTime() - start;
+            System.out.printf("Replicated %,d messages of %d bytes in %.3f s, %,d msg/s%n",
+                    MESSAGES, SIZE, time / 1e9, (long) (MESSAGES * 1e9 / time));
+
+            Histogram histogram = new Histogram();
+            for (int i = 0; i < LATENCY_SAMPLES; i++) {
+                long start1 = System.nanoTime();
+                appender.writeBytes(payload);
+                long index = appender.lastIndexAppended();
+                while (replicationSource.lastAcknowledgedIndex() != index)
+                    Thread.yield();
+                histogram.sample(System.nanoTime() - start1);
+            }
+            System.out.println("Ack latency in us: " + histogram.toMicrosFormat());
+            payload.release();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.openhft.chronicle.queue.replication;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.queue.BinaryMessageHistory;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.ExcerptAppender;
+import net.openhft.chronicle.queue.ExcerptTailer;
+import net.openhft.chronicle.queue.RollCycles;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueExcerpts.StoreTailer;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+public class ReplicationTest {
+
+    @NotNull
+    static SingleChronicleQueue queue(@NotNull File dir) {
+        return queue(dir, false);
+    }
+
+    @NotNull
+    static SingleChronicleQueue queue(@NotNull File dir, boolean binaryHistory) {
+        return SingleChronicleQueueBuilder.binary(dir)
+                .testBlockSize()
+                .rollCycle(RollCycles.TEST_DAILY)
+                .binaryHistory(binaryHistory)
+                .build();
+    }
+
+    static void waitFor(long expected, @NotNull LongSupplier actual) {
+        long end = System.currentTimeMillis() + 10_000;
+        while (actual.getAsLong() != expected) {
+            if (System.currentTimeMillis() > end)
+                fail("Timed out waiting for " + Long.toHexString(expected) + " got " + Long.toHexString(actual.getAsLong()));
+            Jvm.pause(1);
+        }
+    }
+
+    @Test
+    public void shouldReplicateWithSameIndicesAndAcknowledge() throws Exception {
+        File sourceDir = DirectoryUtils.tempDir("replication-source");
+        File sinkDir = DirectoryUtils.tempDir("replication-sink");
+        try (SingleChronicleQueue source = queue(sourceDir);
+             SingleChronicleQueue sink = queue(sinkDir)) {
+            ExcerptAppender appender = source.acquireAppender();
+            for (int i = 0; i < 100; i++)
+                appender.writeText("hello-" + i);
+
+            try (ReplicationSource replicationSource = new ReplicationSource(source, new InetSocketAddress("localhost", 0));
+                 ReplicationSink replicationSink = new ReplicationSink(sink, replicationSource.address())) {
+                waitFor(appender.lastIndexAppended(), replicationSource::lastAcknowledgedIndex);
+
+                // excerpts written while connected are streamed as well
+                for (int i = 100; i < 200; i++)
+                    appender.writeText("hello-" + i);
+                waitFor(appender.lastIndexAppended(), replicationSource::lastAcknowledgedIndex);
+                assertEquals(appender.lastIndexAppended(), replicationSink.lastIndexWritten());
+            }
+
+            StoreTailer ackTailer = (StoreTailer) source.createTailer();
+            assertEquals(appender.lastIndexAppended(), ackTailer.lastAcknowledgedIndexReplicated());
+
+            ExcerptTailer expected = source.createTailer();
+            ExcerptTailer actual = sink.createTailer();
+            for (int i = 0; i < 200; i++) {
+                try (DocumentContext e = expected.readingDocument();
+                     DocumentContext a = actual.readingDocument()) {
+                    assertTrue(a.isPresent());
+                    assertEquals(e.index(), a.index());
+                    assertEquals(e.wire().bytes().toString(), a.wire().bytes().toString());
+                }
+            }
+            assertNull(actual.readText());
+        }
+    }
+
+    @Test
+    public void shouldReplicateLargeExcerpts() throws Exception {
+        File sourceDir = DirectoryUtils.tempDir("replication-source");
+        File sinkDir = DirectoryUtils.tempDir("replication-sink");
+        try (SingleChronicleQueue source = queue(sourceDir);
+             SingleChronicleQueue sink = queue(sinkDir)) {
+            ExcerptAppender appender = source.acquireAppender();
+            Bytes<?> payload = Bytes.elasticByteBuffer();
+            for (int i = 0; i < 20; i++) {
+                payload.clear();
+                for (int j = 0; j < 16 << 10; j++)
+                    payload.writeByte((byte) (i + j));
+                appender.writeBytes(payload);
+            }
+
+            try (ReplicationSource replicationSource = new ReplicationSource(source, new InetSocketAddress("localhost", 0));
+                 ReplicationSink replicationSink = new ReplicationSink(sink, replicationSource.address())) {
+                waitFor(appender.lastIndexAppended(), replicationSource::lastAcknowledgedIndex);
+            }
+            payload.release();
+
+            ExcerptTailer expected = source.createTailer();
+            ExcerptTailer actual = sink.createTailer();
+            for (int i = 0; i < 20; i++) {
+                try (DocumentContext e = expected.readingDocument();
+                     DocumentContext a = actual.readingDocument()) {
+                    assertTrue(a.isPresent());
+                    assertEquals(e.index(), a.index());
+                    assertTrue(e.wire().bytes().contentEquals(a.wire().bytes()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldResumeFromTheLastIndexInTheSink() throws Exception {
+        File sourceDir = DirectoryUtils.tempDir("replication-source");
+        File sinkDir = DirectoryUtils.tempDir("replication-sink");
+        try (SingleChronicleQueue source = queue(sourceDir);
+             SingleChronicleQueue sink = queue(sinkDir)) {
+            ExcerptAppender appender = source.acquireAppender();
+            for (int i = 0; i < 10; i++)
+                appender.writeText("hello-" + i);
+
+            try (ReplicationSource replicationSource = new ReplicationSource(source, new InetSocketAddress("localhost", 0));
+                 ReplicationSink replicationSink = new ReplicationSink(sink, replicationSource.address())) {
+                waitFor(appender.lastIndexAppended(), replicationSource::lastAcknowledgedIndex);
+            }
+
+            for (int i = 10; i < 20; i++)
+                appender.writeText("hello-" + i);
+
+            try (ReplicationSource replicationSource = new ReplicationSource(source, new InetSocketAddress("localhost", 0));
+                 ReplicationSink replicationSink = new ReplicationSink(sink, replicationSource.address())) {
+                waitFor(appender.lastIndexAppended(), replicationSink::lastIndexWritten);
+            }
+
+            ExcerptTailer actual = sink.createTailer();
+            for (int i = 0; i < 20; i++)
+                assertEquals("hello-" + i, actual.readText());
+            assertNull(actual.readText());
+        }
+    }
+
+    @Test
+    public void shouldReplicateTheBinaryHistory() throws Exception {
+        File sourceDir = DirectoryUtils.tempDir("replication-source");
+        File sinkDir = DirectoryUtils.tempDir("replication-sink");
+        try (SingleChronicleQueue source = queue(sourceDir, true);
+             SingleChronicleQueue sink = queue(sinkDir, true)) {
+            ExcerptAppender appender = source.acquireAppender();
+            BinaryMessageHistory history = BinaryMessageHistory.get();
+            for (int i = 0; i < 10; i++) {
+                history.reset();
+                history.addSource(7, 100 + i);
+                appender.writeText("hello-" + i);
+            }
+            // large enough to be sent on its own
+            history.reset();
+            history.addSource(7, 110);
+            char[] chars = new char[8 << 10];
+            Arrays.fill(chars, 'x');
+            appender.writeText(new String(chars));
+
+            try (ReplicationSource replicationSource = new ReplicationSource(source, new InetSocketAddress("localhost", 0));
+                 ReplicationSink replicationSink = new ReplicationSink(sink, replicationSource.address())) {
+                waitFor(appender.lastIndexAppended(), replicationSource::lastAcknowledgedIndex);
+            }
+
+            ExcerptTailer actual = sink.createTailer();
+            for (int i = 0; i < 10; i++) {
+                assertEquals("hello-" + i, actual.readText());
+                assertEquals(7, history.sourceId(0));
+                assertEquals(100 + i, history.sourceIndex(0));
+            }
+            assertEquals(new String(chars), actual.readText());
+            assertEquals(110, history.sourceIndex(0));
+        }
+    }
+
+    @Test
+    public void shouldNotReplicateToASinkWithoutTheBinaryHistory() throws Exception {
+        File sourceDir = DirectoryUtils.tempDir("replication-source");
+        File sinkDir = DirectoryUtils.tempDir("replication-sink");
+        try (SingleChronicleQueue source = queue(sourceDir, true);
+             SingleChronicleQueue sink = queue(sinkDir, false)) {
+            ExcerptAppender appender = source.acquireAppender();
+            appender.writeText("hello");
+
+            try (ReplicationSource replicationSource = new ReplicationSource(source, new InetSocketAddress("localhost", 0));
+                 ReplicationSink replicationSink = new ReplicationSink(sink, replicationSource.address())) {
+                Jvm.pause(200);
+                assertEquals(Long.MIN_VALUE, replicationSink.lastIndexWritten());
+            }
+            assertNull(sink.createTailer().readText());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.openhft.chronicle.queue.service;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.core.io.IOTools;
+import net.openhft.chronicle.core.threads.InvalidEventHandlerException;
+import net.openhft.chronicle.queue.DirectoryUtils;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
+import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.wire.DocumentContext;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyTracerTest {
+    private static final int MESSAGES = 10;
+
+    @Test
+    public void shouldTraceEachHopWithBinaryHistory() throws InvalidEventHandlerException {
+        LatencySnapshot snapshot = trace(true);
+        // written, read by the service, written by the service, read by the tracer.
+        assertEquals(3, snapshot.hops());
+        double[] endToEnd = snapshot.endToEnd();
+        for (int i = 1; i < endToEnd.length; i++)
+            assertTrue(endToEnd[i - 1] <= endToEnd[i]);
+        assertTrue(endToEnd[endToEnd.length - 1] >= snapshot.hop(2)[0]);
+    }
+
+    @Test
+    public void shouldTraceMethodWriterHistory() throws InvalidEventHandlerException {
+        LatencySnapshot snapshot = trace(false);
+        assertTrue(snapshot.hops() >= 1);
+    }
+
+    private static LatencySnapshot trace(boolean binaryHistory) throws InvalidEventHandlerException {
+        String input = OS.TARGET + "/latency-input-" + System.nanoTime();
+        String output = OS.TARGET + "/latency-output-" + System.nanoTime();
+
+        ServiceWrapperBuilder<HelloReplier> builder = ServiceWrapperBuilder
+                .serviceBuilder(input, output, HelloReplier.class, HelloWorldImpl::new)
+                .inputSourceId(1).outputSourceId(2)
+                .binaryHistory(binaryHistory);
+
+        try (SingleChronicleQueue outputQueue = builder.outputQueue();
+             SingleChronicleQueue metrics = SingleChronicleQueueBuilder.binary(DirectoryUtils.tempDir("latency-metrics"))
+                     .testBlockSize()
+                     .build();
+             LatencyTracer tracer = new LatencyTracer(outputQueue).reportTo(metrics, 0, TimeUnit.NANOSECONDS);
+             HelloWorldTest.CloseableHelloWorld helloWorld = builder.inputWriter(HelloWorldTest.CloseableHelloWorld.class)) {
+            for (int i = 0; i < MESSAGES; i++)
+                helloWorld.hello("name-" + i);
+
+            try (ServiceWrapper service = builder.get()) {
+                long timeout = System.currentTimeMillis() + 10_000;
+                while (tracer.snapshot().count() < MESSAGES && System.currentTimeMillis() < timeout)
+                    if (!tracer.action())
+                        Thread.yield();
+            }
+            LatencySnapshot snapshot = tracer.snapshot();
+            assertEquals(MESSAGES, snapshot.count());
+
+            try (DocumentContext dc = metrics.createTailer().readingDocument()) {
+                assertTrue(dc.isPresent());
+                StringBuilder name = new StringBuilder();
+                dc.wire().readEventName(name);
+                assertEquals("latency", name.toString());
+            }
+            return snapshot;
+
+        } finally {
+            try {
+                IOTools.deleteDirWithFiles(new File(input), 2);
+                IOTools.deleteDirWithFiles(new File(output), 2);
+            } catch (IORuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 higherfrequencytrading.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package net.openhft.chronicle.queue.service;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.io.IORuntimeException;
+import net.openhft.chronicle.core.io.IOTools;
+import net.openhft.chronicle.wire.MethodReader;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PartitionedServiceWrapperTest {
+    private static final int PARTITIONS = 3;
+
+    @Test
+    public void shouldProcessEachKeyInOrderInOnePartition() {
+        String input = OS.TARGET + "/partitioned-input-" + System.nanoTime();
+        String output = OS.TARGET + "/partitioned-output-" + System.nanoTime();
+
+        ServiceWrapperBuilder<HelloReplier> builder = ServiceWrapperBuilder
+                .serviceBuilder(input, output, HelloReplier.class, HelloWorldImpl::new)
+                .inputSourceId(1).outputSourceId(2)
+                .partitions(PARTITIONS)
+                // keyed on the name passed to hello(name), as the history is skipped.
+                .partitioner((index, wire) -> {
+                    StringBuilder method = new StringBuilder();
+                    String name = wire.readEventName(method).text();
+                    if (!"hello".contentEquals(method))
+                        throw new IllegalStateException("Expected hello but was " + method);
+                    return name.hashCode();
+                });
+
+        List<Replies> replies = new ArrayList<>();
+        List<MethodReader> readers = new ArrayList<>();
+        for (int p = 0; p < PARTITIONS; p++) {
+            Replies r = new Replies();
+            replies.add(r);
+            readers.add(builder.partitionOutputReader(p, r));
+        }
+
+        try (HelloWorldTest.CloseableHelloWorld helloWorld = builder.inputWriter(HelloWorldTest.CloseableHelloWorld.class)) {
+            try (ServiceWrapper service = builder.get()) {
+                assertEquals(PARTITIONS, service.outputQueues().length);
+                for (int i = 0; i < 20; i++)
+                    helloWorld.hello("name-" + i % 5);
+                readReplies(readers, replies, 20);
+            }
+
+            // a new service carries on after the last message each partition wrote.
+            for (int i = 20; i < 30; i++)
+                helloWorld.hello("name-" + i % 5);
+            try (ServiceWrapper service = builder.get()) {
+                readReplies(readers, replies, 30);
+            }
+            // nothing is processed twice.
+            for (MethodReader reader : readers)
+                assertFalse(reader.readOne());
+
+            for (int p = 0; p < PARTITIONS; p++) {
+                for (String reply : replies.get(p).replies) {
+                    String replyName = reply.substring("Hello ".length());
+                    assertEquals(p, ServicePartitioner.partition(replyName.hashCode(), PARTITIONS));
+                }
+            }
+            // each name is replied to 6 times, by one partition.
+            for (int i = 0; i < 5; i++) {
+                int count = 0;
+                for (Replies r : replies)
+                    for (String reply : r.replies)
+                        if (reply.equals("Hello name-" + i))
+                            count++;
+                assertEquals(6, count);
+            }
+
+        } finally {
+            readers.forEach(MethodReader::close);
+            try {
+                IOTools.deleteDirWithFiles(new File(input), 2);
+                IOTools.deleteDirWithFiles(new File(output), 2);
+            } catch (IORuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void readReplies(List<MethodReader> readers, List<Replies> replies, int expected) {
+        long timeout = System.currentTimeMillis() + 10_000;
+        while (count(replies) < expected && System.currentTimeMillis() < timeout) {
+            boolean busy = false;
+            for (MethodReader reader : readers)
+                busy |= reader.readOne();
+            if (!busy)
+                Thread.yield();
+        }
+        assertEquals(expected, count(replies));
+    }
+
+    private static int count(List<Replies> replies) {
+        int count = 0;
+        for (Replies r : replies)
+            count += r.replies.size();
+        return count;
+    }
+
+    static class Replies implements HelloReplier {
+        final List<String> replies = new ArrayList<>();
+
+        @Override
+        public void reply(String message) {
+            replies.add(message);
+        }
+    }
+}